@@ -0,0 +1,102 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ArtifactBenchmark {
+
+    private static final TypeReference<List<Artifact>> T_ARTIFACTS = new TypeReference<List<Artifact>>() {};
+
+    @Param({ "1000", "100000" })
+    public int size;
+
+    private List<Artifact> artifacts;
+    private List<Artifact> copies;
+    private Set<Artifact> set;
+    private ObjectMapper om;
+    private String json;
+
+    @Setup
+    public void setup() throws JsonProcessingException {
+        artifacts = new ArrayList<>(size);
+        copies = new ArrayList<>(size);
+        for (var i = 0; i < size; i++) {
+            artifacts.add(BenchmarkUtils.artifact(i));
+            copies.add(BenchmarkUtils.artifact(i));
+        }
+        set = new HashSet<>(artifacts);
+        om = new ObjectMapper().registerModule(new ArtifactModule());
+        json = om.writeValueAsString(artifacts);
+    }
+
+    @Benchmark
+    public void hashCodes(Blackhole bh) {
+        for (var a : artifacts) {
+            bh.consume(a.hashCode());
+        }
+    }
+
+    @Benchmark
+    public Set<Artifact> buildHashSet() {
+        return new HashSet<>(artifacts);
+    }
+
+    /** lookups with equal, but not identical instances, so equals is actually executed */
+    @Benchmark
+    public void lookupInHashSet(Blackhole bh) {
+        for (var a : copies) {
+            bh.consume(set.contains(a));
+        }
+    }
+
+    @Benchmark
+    public String serialize() throws JsonProcessingException {
+        return om.writeValueAsString(artifacts);
+    }
+
+    @Benchmark
+    public List<Artifact> deserialize() throws JsonProcessingException {
+        return om.readValue(json, T_ARTIFACTS);
+    }
+}
\ No newline at end of file
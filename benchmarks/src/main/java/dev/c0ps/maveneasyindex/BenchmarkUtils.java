@@ -0,0 +1,52 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+public class BenchmarkUtils {
+
+    private BenchmarkUtils() {
+        // utility class
+    }
+
+    /** The reader works on files, so bundled resources are copied to a temp file. */
+    public static File copyResourceToTempFile(String name) throws IOException {
+        var f = File.createTempFile("benchmark-", "-" + name);
+        f.deleteOnExit();
+        try (var in = BenchmarkUtils.class.getClassLoader().getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IOException("Cannot find resource " + name);
+            }
+            Files.copy(in, f.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return f;
+    }
+
+    public static Artifact artifact(int i) {
+        var a = new Artifact();
+        a.groupId = "org.example.group" + (i % 100);
+        a.artifactId = "artifact-" + (i % 1000);
+        a.version = "1.2." + i;
+        a.packaging = i % 10 == 0 ? "pom" : "jar";
+        a.releaseDate = 1_600_000_000_000L + i;
+        a.repository = i % 50 == 0 ? "https://some.repo/" : "https://repo.maven.apache.org/maven2/";
+        return a;
+    }
+}
\ No newline at end of file
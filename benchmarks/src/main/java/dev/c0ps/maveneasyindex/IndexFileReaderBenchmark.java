@@ -0,0 +1,107 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.document.Document;
+import org.apache.maven.index.updater.IndexDataReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class IndexFileReaderBenchmark {
+
+    @Param({ "some-index.gz", "index-717.gz" })
+    public String index;
+
+    private IndexFileReader reader;
+    private NativeIndexFileReader nativeReader;
+    private File indexFile;
+    private List<Document> docs;
+
+    @Setup
+    public void setup() throws IOException {
+        reader = new IndexFileReader();
+        reader.warmUp();
+        nativeReader = new NativeIndexFileReader();
+        indexFile = BenchmarkUtils.copyResourceToTempFile(index);
+        docs = readDocuments(indexFile);
+    }
+
+    private static List<Document> readDocuments(File f) throws IOException {
+        var docs = new ArrayList<Document>();
+        try ( //
+                var fis = new FileInputStream(f); //
+                var bis = new BufferedInputStream(fis)) {
+            new IndexDataReader(bis).readIndex(docs::add, IndexFileReader.indexingContext());
+        }
+        return docs;
+    }
+
+    @Benchmark
+    public Set<Artifact> readIndexFile() {
+        return reader.readIndexFile(indexFile);
+    }
+
+    @Benchmark
+    public void readIndexFileStreaming(Blackhole bh) {
+        reader.readIndexFile(indexFile, bh::consume);
+    }
+
+    @Benchmark
+    public void readIndexFileStreamingNative(Blackhole bh) {
+        nativeReader.readIndexFile(indexFile, bh::consume);
+    }
+
+    /** all documents of the index per operation, divide by the document count */
+    @Benchmark
+    public void toArtifact(Blackhole bh) {
+        for (var doc : docs) {
+            bh.consume(IndexFileReader.toArtifact(doc));
+        }
+    }
+
+    /** all documents of the index per operation, divide by the document count */
+    @Benchmark
+    public void isValidPackage(Blackhole bh) {
+        for (var doc : docs) {
+            bh.consume(IndexFileReader.isValidPackage(doc));
+        }
+    }
+}
\ No newline at end of file
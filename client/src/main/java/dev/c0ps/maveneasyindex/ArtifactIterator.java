@@ -0,0 +1,97 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterates over the artifacts of an {@link ArtifactReader}, which are only
+ * decoded when they are requested. The reader is closed once the end has been
+ * reached or the iterator is closed. Decoding errors are reported as
+ * {@link UncheckedIOException}.
+ */
+public class ArtifactIterator implements Iterator<Artifact>, Closeable {
+
+    private final ArtifactReader reader;
+
+    private Artifact next;
+    private boolean isClosed;
+
+    public ArtifactIterator(ArtifactReader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+        if (isClosed) {
+            return false;
+        }
+        try {
+            next = reader.read();
+            if (next == null) {
+                close();
+            }
+        } catch (IOException e) {
+            closeQuietly();
+            throw new UncheckedIOException(e);
+        }
+        return next != null;
+    }
+
+    @Override
+    public Artifact next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        var a = next;
+        next = null;
+        return a;
+    }
+
+    /** @return a sequential stream of the remaining artifacts that closes this iterator */
+    public Stream<Artifact> stream() {
+        var split = Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(split, false).onClose(this::closeQuietly);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!isClosed) {
+            isClosed = true;
+            next = null;
+            reader.close();
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException e) {
+            // nothing left to read
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Client for the REST API of <i>Maven Easy Index</i>. All requests share one
+ * {@link HttpClient}, which keeps its connections alive and reuses them. The
+ * artifacts are decoded while the response is received, so the memory
+ * footprint does not depend on the size of an index. Requests for consecutive
+ * indices are sent ahead of time, but only a bounded number of responses is in
+ * flight, and responses are only read as fast as the artifacts are consumed.
+ */
+public class IndexClient {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private final HttpClient client = HttpClient.newBuilder() //
+            // the server does not speak h2c, an upgrade attempt would only waste a round-trip
+            .version(HttpClient.Version.HTTP_1_1) //
+            .followRedirects(HttpClient.Redirect.NORMAL) //
+            .connectTimeout(TIMEOUT) //
+            .build();
+
+    private final URI baseUrl;
+    private final ArtifactFormat format;
+    private final int prefetch;
+
+    /** Requests the binary format and prefetches up to four indices. */
+    public IndexClient(String baseUrl) {
+        this(baseUrl, ArtifactFormat.BINARY, 4);
+    }
+
+    /**
+     * @param prefetch number of indices that are requested ahead of the one that
+     *                 is currently consumed (0 disables prefetching)
+     */
+    public IndexClient(String baseUrl, ArtifactFormat format, int prefetch) {
+        if (baseUrl == null || format == null) {
+            throw new IllegalArgumentException("base url and format cannot be null");
+        }
+        if (prefetch < 0) {
+            throw new IllegalArgumentException("prefetch cannot be negative");
+        }
+        this.baseUrl = URI.create(baseUrl.endsWith("/") ? baseUrl : baseUrl + "/");
+        this.format = format;
+        this.prefetch = prefetch;
+    }
+
+    public boolean exists(int num) throws IOException {
+        var req = request("exists/" + num).GET().build();
+        var status = await(client.sendAsync(req, BodyHandlers.discarding())).statusCode();
+        if (status == 404) {
+            return false;
+        }
+        if (status != 200) {
+            throw new IOException(String.format("Status %d for %s", status, req.uri()));
+        }
+        return true;
+    }
+
+    /**
+     * Opens the artifacts of an index, which are decoded while they are iterated.
+     * The iterator must be closed, if it is not consumed completely.
+     *
+     * @throws FileNotFoundException if the index does not exist
+     */
+    public ArtifactIterator open(int num) throws IOException {
+        var res = await(client.sendAsync(get(num), BodyHandlers.ofInputStream()));
+        return new ArtifactIterator(newReader(res));
+    }
+
+    /** Like {@link #open(int)}, but the stream should be used in a try-with-resources block. */
+    public Stream<Artifact> stream(int num) {
+        try {
+            return open(num).stream();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Streams the artifacts of all existing indices in the range (inclusive), in
+     * the order of the indices, missing indices are skipped. The stream should be
+     * used in a try-with-resources block, closing it discards prefetched responses.
+     */
+    public Stream<Artifact> stream(int from, int to) {
+        if (from < 0 || from > to) {
+            throw new IllegalArgumentException(String.format("Invalid range %d-%d", from, to));
+        }
+        return new ArtifactIterator(new RangeReader(from, to)).stream();
+    }
+
+    private HttpRequest get(int num) {
+        return request("get/" + num) //
+                .header("Accept", format.getMediaType()) //
+                .header("Accept-Encoding", "gzip") //
+                .GET().build();
+    }
+
+    private HttpRequest.Builder request(String path) {
+        // no request timeout, the server fails with 503 if an index cannot be loaded in time
+        return HttpRequest.newBuilder(baseUrl.resolve(path));
+    }
+
+    private ArtifactReader newReader(HttpResponse<InputStream> res) throws IOException {
+        var status = res.statusCode();
+        if (status != 200) {
+            res.body().close();
+            if (status == 404) {
+                throw new FileNotFoundException(String.format("Index does not exist: %s", res.uri()));
+            }
+            throw new IOException(String.format("Status %d for %s", status, res.uri()));
+        }
+        InputStream in = res.body();
+        try {
+            if (res.headers().firstValue("Content-Encoding").orElse("").equalsIgnoreCase("gzip")) {
+                in = new GZIPInputStream(in);
+            }
+            var contentType = res.headers().firstValue("Content-Type").orElse(null);
+            var f = ArtifactFormat.fromMediaType(contentType);
+            return (f == null ? format : f).newReader(in);
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> f) throws IOException {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            f.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for response");
+        } catch (ExecutionException e) {
+            var cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /** Closing the body of an unread response aborts its connection. */
+    private static void discard(CompletableFuture<HttpResponse<InputStream>> f) {
+        f.thenAccept(res -> {
+            try {
+                res.body().close();
+            } catch (IOException e) {
+                // connection is discarded anyway
+            }
+        });
+    }
+
+    /**
+     * Reads consecutive indices, while the next responses are already requested.
+     * A response that is not read yet only buffers what fits into the receive
+     * window, so the memory of the prefetched requests is bounded as well.
+     */
+    private class RangeReader implements ArtifactReader {
+
+        private final Deque<CompletableFuture<HttpResponse<InputStream>>> pending = new ArrayDeque<>();
+        private final int to;
+
+        private int next;
+        private ArtifactReader current;
+
+        private RangeReader(int from, int to) {
+            this.next = from;
+            this.to = to;
+        }
+
+        @Override
+        public Artifact read() throws IOException {
+            while (true) {
+                if (current != null) {
+                    var a = current.read();
+                    if (a != null) {
+                        return a;
+                    }
+                    current.close();
+                    current = null;
+                }
+                requestAhead();
+                if (pending.isEmpty()) {
+                    return null;
+                }
+                var res = await(pending.poll());
+                try {
+                    current = newReader(res);
+                } catch (FileNotFoundException e) {
+                    // missing indices are skipped, like in a batch request
+                }
+            }
+        }
+
+        /** Keeps the next response and up to {@link #prefetch} further ones in flight. */
+        private void requestAhead() {
+            while (pending.size() <= prefetch && next <= to) {
+                pending.add(client.sendAsync(get(next++), BodyHandlers.ofInputStream()));
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            next = to + 1;
+            while (!pending.isEmpty()) {
+                discard(pending.poll());
+            }
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+        }
+    }
+}
\ No newline at end of file
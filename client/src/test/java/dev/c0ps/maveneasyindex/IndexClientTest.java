@@ -0,0 +1,282 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class IndexClientTest {
+
+    private StandInServer server;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        server = new StandInServer();
+        server.indices.put(1, someArtifacts(1, 3));
+        server.indices.put(2, someArtifacts(2, 1000));
+        server.indices.put(4, someArtifacts(4, 2));
+    }
+
+    @AfterEach
+    public void teardown() {
+        server.stop();
+    }
+
+    private IndexClient sut(ArtifactFormat f, int prefetch) {
+        return new IndexClient(server.url(), f, prefetch);
+    }
+
+    @Test
+    public void exists() throws IOException {
+        var sut = new IndexClient(server.url());
+        assertTrue(sut.exists(1));
+        assertFalse(sut.exists(3));
+    }
+
+    @Test
+    public void serverErrorsAreReportedForExists() {
+        server.failures = 1;
+        var e = assertThrows(IOException.class, () -> new IndexClient(server.url()).exists(1));
+        assertTrue(e.getMessage().startsWith("Status 503 for "));
+    }
+
+    @Test
+    public void allFormatsAreDecoded() throws IOException {
+        for (var f : ArtifactFormat.values()) {
+            try (var it = sut(f, 0).open(2)) {
+                assertEquals(server.indices.get(2), toList(it), f.name());
+            }
+        }
+        assertEquals(List.of("application/json", "application/x-ndjson", "application/x-jackson-smile", "application/vnd.maven-easy-index.artifacts"),
+                server.accepts);
+    }
+
+    @Test
+    public void gzipResponsesAreDecoded() throws IOException {
+        server.gzip = true;
+        try (var it = new IndexClient(server.url()).open(2)) {
+            assertEquals(server.indices.get(2), toList(it));
+        }
+    }
+
+    @Test
+    public void missingIndexIsReported() {
+        assertThrows(FileNotFoundException.class, () -> new IndexClient(server.url()).open(3));
+    }
+
+    @Test
+    public void serverErrorsAreReported() {
+        server.failures = 1;
+        var e = assertThrows(IOException.class, () -> new IndexClient(server.url()).open(1));
+        assertTrue(e.getMessage().startsWith("Status 503 for "));
+    }
+
+    @Test
+    public void streamOfSingleIndex() {
+        try (var s = new IndexClient(server.url()).stream(1)) {
+            assertEquals(server.indices.get(1), s.collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void streamOfMissingIndexFails() {
+        var e = assertThrows(UncheckedIOException.class, () -> new IndexClient(server.url()).stream(3));
+        assertTrue(e.getCause() instanceof FileNotFoundException);
+    }
+
+    @Test
+    public void rangeSkipsMissingIndices() {
+        var expected = new ArrayList<Artifact>();
+        expected.addAll(server.indices.get(1));
+        expected.addAll(server.indices.get(2));
+        expected.addAll(server.indices.get(4));
+        for (var prefetch : new int[] { 0, 1, 4 }) {
+            try (var s = sut(ArtifactFormat.BINARY, prefetch).stream(0, 5)) {
+                assertEquals(expected, s.collect(Collectors.toList()), "prefetch " + prefetch);
+            }
+        }
+    }
+
+    @Test
+    public void rangeWithoutExistingIndices() {
+        try (var s = new IndexClient(server.url()).stream(5, 9)) {
+            assertEquals(0, s.count());
+        }
+    }
+
+    @Test
+    public void rangeRequestsAhead() throws InterruptedException {
+        // index 1 is only answered once the requests for 2 and 4 have arrived as well
+        server.barrier = new CountDownLatch(3);
+        try (var s = sut(ArtifactFormat.BINARY, 3).stream(1, 4)) {
+            assertEquals(server.indices.get(1).get(0), s.findFirst().get());
+        }
+        assertEquals(0, server.barrier.getCount());
+    }
+
+    @Test
+    public void rangeOnlyRequestsPrefetchedIndices() throws InterruptedException {
+        try (var s = sut(ArtifactFormat.BINARY, 1).stream(1, 100)) {
+            assertEquals(server.indices.get(1).get(0), s.findFirst().get());
+        }
+        // the prefetched request might still be on its way
+        for (var i = 0; i < 50 && server.requested.size() < 2; i++) {
+            Thread.sleep(100);
+        }
+        Thread.sleep(100);
+        assertEquals(Set.of(1, 2), Set.copyOf(server.requested));
+    }
+
+    @Test
+    public void invalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new IndexClient(server.url(), ArtifactFormat.JSON, -1));
+        assertThrows(IllegalArgumentException.class, () -> new IndexClient(server.url()).stream(2, 1));
+        assertThrows(IllegalArgumentException.class, () -> new IndexClient(server.url()).stream(-1, 1));
+    }
+
+    private static List<Artifact> toList(ArtifactIterator it) {
+        var artifacts = new ArrayList<Artifact>();
+        it.forEachRemaining(artifacts::add);
+        return artifacts;
+    }
+
+    private static List<Artifact> someArtifacts(int idx, int num) {
+        var artifacts = new ArrayList<Artifact>();
+        for (var i = 0; i < num; i++) {
+            var a = new Artifact("g" + idx, "a" + (i % 13), "1." + i, i % 5 == 4 ? "pom" : "jar").setReleaseDate(idx * 1000 + i);
+            a.repository = "https://repo.maven.apache.org/maven2/";
+            artifacts.add(a);
+        }
+        return artifacts;
+    }
+
+    /** Answers like the index service, but from a fixed set of indices. */
+    private static class StandInServer {
+
+        private final Map<Integer, List<Artifact>> indices = new HashMap<>();
+        private final List<Integer> requested = Collections.synchronizedList(new ArrayList<>());
+        private final List<String> accepts = Collections.synchronizedList(new ArrayList<>());
+        private final ExecutorService executor = Executors.newCachedThreadPool();
+        private final HttpServer server;
+
+        private volatile boolean gzip;
+        private volatile int failures;
+        private volatile CountDownLatch barrier;
+
+        private StandInServer() throws IOException {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/", this::handle);
+            server.setExecutor(executor);
+            server.start();
+        }
+
+        private String url() {
+            return "http://127.0.0.1:" + server.getAddress().getPort();
+        }
+
+        private void stop() {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+
+        private void handle(HttpExchange ex) throws IOException {
+            try {
+                var path = ex.getRequestURI().getPath().split("/");
+                var num = Integer.parseInt(path[2]);
+                if (failures > 0) {
+                    failures--;
+                    ex.sendResponseHeaders(503, -1);
+                    return;
+                }
+                var artifacts = indices.get(num);
+                if (artifacts == null) {
+                    ex.sendResponseHeaders(404, -1);
+                    return;
+                }
+                if (path[1].equals("exists")) {
+                    ex.sendResponseHeaders(200, -1);
+                    return;
+                }
+                requested.add(num);
+                awaitBarrier();
+                var accept = ex.getRequestHeaders().getFirst("Accept");
+                accepts.add(accept);
+                var f = ArtifactFormat.fromMediaType(accept);
+                var body = encode(f, artifacts, gzip);
+                ex.getResponseHeaders().add("Content-Type", f.getMediaType());
+                if (gzip) {
+                    ex.getResponseHeaders().add("Content-Encoding", "gzip");
+                }
+                ex.sendResponseHeaders(200, body.length);
+                ex.getResponseBody().write(body);
+            } finally {
+                ex.close();
+            }
+        }
+
+        private void awaitBarrier() {
+            var b = barrier;
+            if (b != null) {
+                b.countDown();
+                try {
+                    b.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        private static byte[] encode(ArtifactFormat f, List<Artifact> artifacts, boolean gzip) throws IOException {
+            var baos = new ByteArrayOutputStream();
+            OutputStream out = gzip ? new GZIPOutputStream(baos) : baos;
+            try (var w = f.newWriter(out)) {
+                for (var a : artifacts) {
+                    w.write(a);
+                }
+            }
+            out.close();
+            return baos.toByteArray();
+        }
+    }
+}
\ No newline at end of file
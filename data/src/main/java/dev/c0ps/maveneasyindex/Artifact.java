@@ -16,9 +16,7 @@
 package dev.c0ps.maveneasyindex;
 
 import java.util.Date;
-
-import org.apache.commons.lang3.builder.EqualsBuilder;
-import org.apache.commons.lang3.builder.HashCodeBuilder;
+import java.util.Objects;
 
 public class Artifact implements Cloneable {
 
@@ -80,14 +78,36 @@ public class Artifact implements Cloneable {
         return clone;
     }
 
+    // hashing and equality are called for every set insert, so they avoid reflection
+    // and rely on the (cached) hash codes and identity checks of the contained strings
+
     @Override
     public int hashCode() {
-        return HashCodeBuilder.reflectionHashCode(this);
+        var h = 1;
+        h = 31 * h + Objects.hashCode(groupId);
+        h = 31 * h + Objects.hashCode(artifactId);
+        h = 31 * h + Objects.hashCode(version);
+        h = 31 * h + Objects.hashCode(packaging);
+        h = 31 * h + Long.hashCode(releaseDate);
+        h = 31 * h + Objects.hashCode(repository);
+        return h;
     }
 
     @Override
     public boolean equals(Object obj) {
-        return EqualsBuilder.reflectionEquals(this, obj);
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || obj.getClass() != getClass()) {
+            return false;
+        }
+        var other = (Artifact) obj;
+        return releaseDate == other.releaseDate //
+                && Objects.equals(groupId, other.groupId) //
+                && Objects.equals(artifactId, other.artifactId) //
+                && Objects.equals(version, other.version) //
+                && Objects.equals(packaging, other.packaging) //
+                && Objects.equals(repository, other.repository);
     }
 
     @Override
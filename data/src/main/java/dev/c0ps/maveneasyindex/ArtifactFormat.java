@@ -0,0 +1,173 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * The encodings in which the artifacts of an index can be transferred,
+ * identified by their media type.
+ */
+public enum ArtifactFormat {
+
+    /** a single JSON array, the default */
+    JSON(ArtifactFormat.MEDIA_TYPE_JSON) {
+        @Override
+        public ArtifactWriter newWriter(OutputStream out) throws IOException {
+            return new JacksonWriter(JSON_MAPPER.createGenerator(out), true);
+        }
+
+        @Override
+        public ArtifactReader newReader(InputStream in) throws IOException {
+            return new JacksonReader(JSON_MAPPER.readerFor(Artifact.class).readValues(in));
+        }
+    },
+
+    /** one JSON string per line, convenient for line-by-line consumers */
+    NDJSON(ArtifactFormat.MEDIA_TYPE_NDJSON) {
+        @Override
+        public ArtifactWriter newWriter(OutputStream out) throws IOException {
+            return new JacksonWriter(JSON_MAPPER.createGenerator(out), false);
+        }
+
+        @Override
+        public ArtifactReader newReader(InputStream in) throws IOException {
+            return new JacksonReader(JSON_MAPPER.readerFor(Artifact.class).readValues(in));
+        }
+    },
+
+    /** the JSON array in the binary Smile format */
+    SMILE(ArtifactFormat.MEDIA_TYPE_SMILE) {
+        @Override
+        public ArtifactWriter newWriter(OutputStream out) throws IOException {
+            return new JacksonWriter(SMILE_MAPPER.createGenerator(out), true);
+        }
+
+        @Override
+        public ArtifactReader newReader(InputStream in) throws IOException {
+            return new JacksonReader(SMILE_MAPPER.readerFor(Artifact.class).readValues(in));
+        }
+    },
+
+    /** dictionary-encoded binary format, see {@link BinaryArtifactWriter} */
+    BINARY(ArtifactFormat.MEDIA_TYPE_BINARY) {
+        @Override
+        public ArtifactWriter newWriter(OutputStream out) throws IOException {
+            return new BinaryArtifactWriter(out);
+        }
+
+        @Override
+        public ArtifactReader newReader(InputStream in) throws IOException {
+            return new BinaryArtifactReader(in);
+        }
+    };
+
+    public static final String MEDIA_TYPE_JSON = "application/json";
+    public static final String MEDIA_TYPE_NDJSON = "application/x-ndjson";
+    public static final String MEDIA_TYPE_SMILE = "application/x-jackson-smile";
+    public static final String MEDIA_TYPE_BINARY = "application/vnd.maven-easy-index.artifacts";
+
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper().registerModule(new ArtifactModule());
+    private static final ObjectMapper SMILE_MAPPER = new ObjectMapper(new SmileFactory()).registerModule(new ArtifactModule());
+
+    private final String mediaType;
+
+    private ArtifactFormat(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public abstract ArtifactWriter newWriter(OutputStream out) throws IOException;
+
+    public abstract ArtifactReader newReader(InputStream in) throws IOException;
+
+    /** @return the matching format or null, parameters like the charset are ignored */
+    public static ArtifactFormat fromMediaType(String mediaType) {
+        if (mediaType == null) {
+            return null;
+        }
+        var idx = mediaType.indexOf(';');
+        var type = (idx == -1 ? mediaType : mediaType.substring(0, idx)).trim();
+        for (var f : values()) {
+            if (f.mediaType.equalsIgnoreCase(type)) {
+                return f;
+            }
+        }
+        return null;
+    }
+
+    private static class JacksonWriter implements ArtifactWriter {
+
+        private final JsonGenerator gen;
+        private final boolean isArray;
+
+        private JacksonWriter(JsonGenerator gen, boolean isArray) throws IOException {
+            this.gen = gen;
+            this.isArray = isArray;
+            if (isArray) {
+                gen.writeStartArray();
+            } else {
+                // every value is terminated by a line break instead
+                gen.setRootValueSeparator(null);
+            }
+        }
+
+        @Override
+        public void write(Artifact a) throws IOException {
+            gen.writeObject(a);
+            if (!isArray) {
+                gen.writeRaw('\n');
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (isArray) {
+                gen.writeEndArray();
+            }
+            gen.close();
+        }
+    }
+
+    private static class JacksonReader implements ArtifactReader {
+
+        private final MappingIterator<Artifact> it;
+
+        private JacksonReader(MappingIterator<Artifact> it) {
+            this.it = it;
+        }
+
+        @Override
+        public Artifact read() throws IOException {
+            return it.hasNextValue() ? it.nextValue() : null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            it.close();
+        }
+    }
+}
\ No newline at end of file
@@ -21,18 +21,28 @@ import com.fasterxml.jackson.core.JacksonException;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
 import com.fasterxml.jackson.databind.JsonSerializer;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 
+/**
+ * Serializes an {@link Artifact} as a single string "g:a:v:p:date[@repo]", in
+ * which "@" and ":" are escaped as "%40" and "%3A". Both directions work
+ * directly on char buffers, in the common case that no escaping is needed,
+ * only the resulting strings are allocated.
+ */
 public class ArtifactModule extends SimpleModule {
 
     private static final long serialVersionUID = -1L;
-    private static final String CENTRAL = "https://repo.maven.apache.org/maven2/";
+    static final String CENTRAL = "https://repo.maven.apache.org/maven2/";
+
+    private static final int MAX_REUSED_BUFFER = 64 * 1024;
+    private static final ThreadLocal<char[]> BUFFERS = ThreadLocal.withInitial(() -> new char[256]);
 
-    private static boolean isNullOrCentral(Artifact a) {
+    static boolean isNullOrCentral(Artifact a) {
         return a.repository == null || CENTRAL.equals(a.repository);
     }
 
@@ -41,61 +51,222 @@ public class ArtifactModule extends SimpleModule {
             @Override
             public void serialize(Artifact a, JsonGenerator gen, SerializerProvider serializers) throws IOException {
 
-                var sb = new StringBuilder() //
-                        .append(enc(a.groupId)).append(":")//
-                        .append(enc(a.artifactId)).append(":")//
-                        .append(enc(a.version)).append(":") //
-                        .append(enc(a.packaging)).append(":") //
-                        .append(a.releaseDate);
+                var hasRepo = !isNullOrCentral(a);
+
+                // worst case: every char is escaped, plus separators and a 20-char date
+                var maxLen = 3 * (a.groupId.length() + a.artifactId.length() + a.version.length() + a.packaging.length() //
+                        + (hasRepo ? a.repository.length() : 0)) + 25;
+                var buf = buffer(maxLen);
+
+                var pos = enc(a.groupId, buf, 0);
+                buf[pos++] = ':';
+                pos = enc(a.artifactId, buf, pos);
+                buf[pos++] = ':';
+                pos = enc(a.version, buf, pos);
+                buf[pos++] = ':';
+                pos = enc(a.packaging, buf, pos);
+                buf[pos++] = ':';
+                pos = appendLong(a.releaseDate, buf, pos);
 
-                if (!isNullOrCentral(a)) {
-                    sb.append('@').append(enc(a.repository));
+                if (hasRepo) {
+                    buf[pos++] = '@';
+                    pos = enc(a.repository, buf, pos);
                 }
 
-                var s = sb.toString();
-                gen.writeString(s);
+                gen.writeString(buf, 0, pos);
             }
-
         });
 
         addDeserializer(Artifact.class, new JsonDeserializer<Artifact>() {
             @Override
             public Artifact deserialize(JsonParser p, DeserializationContext ctxt) throws IOException, JacksonException {
 
-                var a = new Artifact();
-                var json = p.getValueAsString();
+                char[] chars;
+                int off;
+                int len;
+                if (p.currentToken() == JsonToken.VALUE_STRING) {
+                    chars = p.getTextCharacters();
+                    off = p.getTextOffset();
+                    len = p.getTextLength();
+                } else {
+                    var json = p.getValueAsString();
+                    if (json == null) {
+                        throw new JsonParseException("Cannot parse artifact: " + p.getText());
+                    }
+                    chars = json.toCharArray();
+                    off = 0;
+                    len = chars.length;
+                }
+                return parse(chars, off, off + len);
+            }
+        });
+    }
 
-                var idx = json.indexOf('@');
-                var coord = idx == -1 ? json : json.substring(0, idx);
+    private static char[] buffer(int minLen) {
+        if (minLen > MAX_REUSED_BUFFER) {
+            return new char[minLen];
+        }
+        var buf = BUFFERS.get();
+        if (buf.length < minLen) {
+            buf = new char[Math.min(MAX_REUSED_BUFFER, Math.max(minLen, 2 * buf.length))];
+            BUFFERS.set(buf);
+        }
+        return buf;
+    }
 
-                a.repository = idx == -1 //
-                        ? CENTRAL
-                        : dec(json.substring(idx + 1));
+    private static Artifact parse(char[] chars, int from, int to) throws JsonParseException {
+        var at = indexOf(chars, from, to, '@');
+        var coordEnd = at == -1 ? to : at;
 
-                var parts = coord.split(":");
-                if (parts.length != 5) {
-                    throw new JsonParseException("Cannot parse artifact: " + json);
-                }
+        // like String.split, trailing empty parts are ignored
+        var end = coordEnd;
+        while (end > from && chars[end - 1] == ':') {
+            end--;
+        }
 
-                a.groupId = dec(parts[0]);
-                a.artifactId = dec(parts[1]);
-                a.version = dec(parts[2]);
-                a.packaging = dec(parts[3]);
-                try {
-                    a.releaseDate = Long.parseLong(parts[4]);
-                } catch (NumberFormatException e) {
-                    throw new JsonParseException("Cannot parse release date: " + json);
-                }
-                return a;
+        var c1 = indexOf(chars, from, end, ':');
+        var c2 = c1 == -1 ? -1 : indexOf(chars, c1 + 1, end, ':');
+        var c3 = c2 == -1 ? -1 : indexOf(chars, c2 + 1, end, ':');
+        var c4 = c3 == -1 ? -1 : indexOf(chars, c3 + 1, end, ':');
+        if (c4 == -1 || indexOf(chars, c4 + 1, end, ':') != -1) {
+            throw new JsonParseException("Cannot parse artifact: " + new String(chars, from, to - from));
+        }
+
+        var a = new Artifact();
+        a.groupId = dec(chars, from, c1);
+        a.artifactId = dec(chars, c1 + 1, c2);
+        a.version = dec(chars, c2 + 1, c3);
+        a.packaging = dec(chars, c3 + 1, c4);
+        try {
+            a.releaseDate = parseLong(chars, c4 + 1, end);
+        } catch (NumberFormatException e) {
+            throw new JsonParseException("Cannot parse release date: " + new String(chars, from, to - from));
+        }
+        a.repository = at == -1 //
+                ? CENTRAL
+                : dec(chars, at + 1, to);
+        return a;
+    }
+
+    private static int indexOf(char[] chars, int from, int to, char c) {
+        for (var i = from; i < to; i++) {
+            if (chars[i] == c) {
+                return i;
             }
-        });
+        }
+        return -1;
+    }
+
+    private static int enc(String s, char[] buf, int pos) {
+        var len = s.length();
+        s.getChars(0, len, buf, pos);
+        for (var i = 0; i < len; i++) {
+            var c = buf[pos + i];
+            if (c == '@' || c == ':') {
+                return encFrom(s, i, buf, pos + i);
+            }
+        }
+        return pos + len;
+    }
+
+    private static int encFrom(String s, int from, char[] buf, int pos) {
+        for (var i = from; i < s.length(); i++) {
+            var c = s.charAt(i);
+            if (c == '@') {
+                buf[pos++] = '%';
+                buf[pos++] = '4';
+                buf[pos++] = '0';
+            } else if (c == ':') {
+                buf[pos++] = '%';
+                buf[pos++] = '3';
+                buf[pos++] = 'A';
+            } else {
+                buf[pos++] = c;
+            }
+        }
+        return pos;
     }
 
-    private static String enc(String s) {
-        return s.replace("@", "%40").replace(":", "%3A");
+    private static String dec(char[] chars, int from, int to) {
+        var esc = indexOf(chars, from, to, '%');
+        if (esc == -1) {
+            return new String(chars, from, to - from);
+        }
+        var sb = new StringBuilder(to - from).append(chars, from, esc - from);
+        var i = esc;
+        while (i < to) {
+            var c = chars[i];
+            if (c == '%' && i + 2 < to && chars[i + 1] == '4' && chars[i + 2] == '0') {
+                sb.append('@');
+                i += 3;
+            } else if (c == '%' && i + 2 < to && chars[i + 1] == '3' && chars[i + 2] == 'A') {
+                sb.append(':');
+                i += 3;
+            } else {
+                sb.append(c);
+                i++;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static int appendLong(long l, char[] buf, int pos) {
+        if (l == Long.MIN_VALUE) {
+            var s = Long.toString(l);
+            s.getChars(0, s.length(), buf, pos);
+            return pos + s.length();
+        }
+        if (l < 0) {
+            buf[pos++] = '-';
+            l = -l;
+        }
+        var start = pos;
+        do {
+            buf[pos++] = (char) ('0' + l % 10);
+            l /= 10;
+        } while (l != 0);
+        for (int i = start, j = pos - 1; i < j; i++, j--) {
+            var tmp = buf[i];
+            buf[i] = buf[j];
+            buf[j] = tmp;
+        }
+        return pos;
     }
 
-    private static String dec(String s) {
-        return s.replace("%40", "@").replace("%3A", ":");
+    /** same rules as {@link Long#parseLong(String)}, but without creating a string */
+    private static long parseLong(char[] chars, int from, int to) {
+        if (from >= to) {
+            throw new NumberFormatException();
+        }
+        var negative = false;
+        var limit = -Long.MAX_VALUE;
+        var i = from;
+        var first = chars[i];
+        if (first < '0') {
+            if (first == '-') {
+                negative = true;
+                limit = Long.MIN_VALUE;
+            } else if (first != '+') {
+                throw new NumberFormatException();
+            }
+            if (to - from == 1) {
+                throw new NumberFormatException();
+            }
+            i++;
+        }
+        var multmin = limit / 10;
+        var result = 0L;
+        while (i < to) {
+            var digit = Character.digit(chars[i++], 10);
+            if (digit < 0 || result < multmin) {
+                throw new NumberFormatException();
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                throw new NumberFormatException();
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
     }
 }
\ No newline at end of file
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes artifacts one after the other, without having to keep all of them in
+ * memory.
+ */
+public interface ArtifactReader extends Closeable {
+
+    /** @return the next artifact or null, once the end has been reached */
+    Artifact read() throws IOException;
+
+    default List<Artifact> readAll() throws IOException {
+        var artifacts = new ArrayList<Artifact>();
+        Artifact a;
+        while ((a = read()) != null) {
+            artifacts.add(a);
+        }
+        return artifacts;
+    }
+}
\ No newline at end of file
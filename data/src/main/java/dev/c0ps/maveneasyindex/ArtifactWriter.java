@@ -0,0 +1,28 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Encodes artifacts one after the other. Closing the writer completes the
+ * encoding and closes the underlying stream.
+ */
+public interface ArtifactWriter extends Closeable {
+
+    void write(Artifact a) throws IOException;
+}
\ No newline at end of file
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import static dev.c0ps.maveneasyindex.BinaryArtifactWriter.MAGIC;
+import static dev.c0ps.maveneasyindex.BinaryArtifactWriter.REF_NEW;
+import static dev.c0ps.maveneasyindex.BinaryArtifactWriter.REF_NULL;
+import static dev.c0ps.maveneasyindex.BinaryArtifactWriter.REF_OFFSET;
+import static dev.c0ps.maveneasyindex.BinaryArtifactWriter.TAG_ARTIFACT;
+import static dev.c0ps.maveneasyindex.BinaryArtifactWriter.TAG_END;
+import static dev.c0ps.maveneasyindex.BinaryArtifactWriter.VERSION;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Decodes the format of the {@link BinaryArtifactWriter}. */
+public class BinaryArtifactReader implements ArtifactReader {
+
+    private static final int MAX_STRING_LENGTH = 1 << 20;
+
+    private final DataInputStream in;
+    private final List<String> dict = new ArrayList<>();
+    private boolean isFinished = false;
+
+    public BinaryArtifactReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in));
+        if (this.in.readInt() != MAGIC) {
+            throw new IOException("Not a binary artifact stream");
+        }
+        var version = this.in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported version of binary artifact stream: " + version);
+        }
+    }
+
+    @Override
+    public Artifact read() throws IOException {
+        if (isFinished) {
+            return null;
+        }
+        var tag = in.readUnsignedByte();
+        if (tag == TAG_END) {
+            isFinished = true;
+            return null;
+        }
+        if (tag != TAG_ARTIFACT) {
+            throw new IOException("Unknown record tag: " + tag);
+        }
+        var a = new Artifact();
+        a.groupId = readString();
+        a.artifactId = readString();
+        a.version = readString();
+        a.packaging = readString();
+        a.releaseDate = VarInts.readVarLong(in);
+        var repo = readString();
+        a.repository = repo == null ? ArtifactModule.CENTRAL : repo;
+        return a;
+    }
+
+    private String readString() throws IOException {
+        var ref = VarInts.readVarInt(in);
+        if (ref == REF_NULL) {
+            return null;
+        }
+        if (ref == REF_NEW) {
+            var len = VarInts.readVarInt(in);
+            if (len < 0 || len > MAX_STRING_LENGTH) {
+                throw new IOException("Invalid string length: " + len);
+            }
+            var bytes = new byte[len];
+            in.readFully(bytes);
+            var s = new String(bytes, StandardCharsets.UTF_8);
+            dict.add(s);
+            return s;
+        }
+        var idx = ref - REF_OFFSET;
+        if (idx < 0 || idx >= dict.size()) {
+            throw new IOException("Invalid string reference: " + ref);
+        }
+        return dict.get(idx);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact binary encoding for bulk transfers. After a header (magic number and
+ * version), every artifact is a record that starts with a tag byte, the stream
+ * is terminated by an end tag. A record contains the fields in the order
+ * g/a/v/p/date/repo. Strings are references into a dictionary that is built
+ * while writing: 0 is null, 1 introduces a new string (varint length and UTF-8
+ * bytes), and any larger number n refers to the (n-2)-th string seen so far.
+ * The release date is a zig-zag encoded varint, the central repository is
+ * encoded as null.
+ */
+public class BinaryArtifactWriter implements ArtifactWriter {
+
+    static final int MAGIC = 0x4D454942; // "MEIB"
+    static final int VERSION = 1;
+
+    static final int TAG_END = 0;
+    static final int TAG_ARTIFACT = 1;
+
+    static final int REF_NULL = 0;
+    static final int REF_NEW = 1;
+    static final int REF_OFFSET = 2;
+
+    private final DataOutputStream out;
+    private final Map<String, Integer> dict = new HashMap<>();
+
+    public BinaryArtifactWriter(OutputStream out) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        this.out.writeInt(MAGIC);
+        this.out.writeByte(VERSION);
+    }
+
+    @Override
+    public void write(Artifact a) throws IOException {
+        out.writeByte(TAG_ARTIFACT);
+        writeString(a.groupId);
+        writeString(a.artifactId);
+        writeString(a.version);
+        writeString(a.packaging);
+        VarInts.writeVarLong(out, a.releaseDate);
+        writeString(ArtifactModule.isNullOrCentral(a) ? null : a.repository);
+    }
+
+    private void writeString(String s) throws IOException {
+        if (s == null) {
+            VarInts.writeVarInt(out, REF_NULL);
+            return;
+        }
+        var idx = dict.get(s);
+        if (idx != null) {
+            VarInts.writeVarInt(out, idx + REF_OFFSET);
+            return;
+        }
+        dict.put(s, dict.size());
+        var bytes = s.getBytes(StandardCharsets.UTF_8);
+        VarInts.writeVarInt(out, REF_NEW);
+        VarInts.writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.writeByte(TAG_END);
+        out.close();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Variable-length encoding of integers, seven bits per byte, least significant
+ * group first. Longs are zig-zag encoded, so small negative numbers stay small.
+ */
+public final class VarInts {
+
+    private VarInts() {
+        // utility class
+    }
+
+    public static void writeVarInt(DataOutput out, int i) throws IOException {
+        while ((i & ~0x7F) != 0) {
+            out.writeByte((i & 0x7F) | 0x80);
+            i >>>= 7;
+        }
+        out.writeByte(i);
+    }
+
+    public static int readVarInt(DataInput in) throws IOException {
+        var i = 0;
+        for (var shift = 0; shift < 32; shift += 7) {
+            var b = in.readByte();
+            i |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return i;
+            }
+        }
+        throw new IOException("Malformed variable-length integer");
+    }
+
+    public static void writeVarLong(DataOutput out, long l) throws IOException {
+        var zz = (l << 1) ^ (l >> 63);
+        while ((zz & ~0x7FL) != 0) {
+            out.writeByte((int) ((zz & 0x7F) | 0x80));
+            zz >>>= 7;
+        }
+        out.writeByte((int) zz);
+    }
+
+    public static long readVarLong(DataInput in) throws IOException {
+        var zz = 0L;
+        for (var shift = 0; shift < 64; shift += 7) {
+            var b = in.readByte();
+            zz |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zz >>> 1) ^ -(zz & 1);
+            }
+        }
+        throw new IOException("Malformed variable-length long");
+    }
+}
\ No newline at end of file
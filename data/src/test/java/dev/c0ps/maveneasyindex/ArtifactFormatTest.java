@@ -0,0 +1,156 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import static dev.c0ps.maveneasyindex.ArtifactFormat.BINARY;
+import static dev.c0ps.maveneasyindex.ArtifactFormat.JSON;
+import static dev.c0ps.maveneasyindex.ArtifactFormat.NDJSON;
+import static dev.c0ps.maveneasyindex.ArtifactFormat.SMILE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class ArtifactFormatTest {
+
+    private static final String REPO_CENTRAL = "https://repo.maven.apache.org/maven2/";
+
+    @Test
+    public void mediaTypesAreResolved() {
+        assertEquals(JSON, ArtifactFormat.fromMediaType("application/json"));
+        assertEquals(JSON, ArtifactFormat.fromMediaType("application/json; charset=UTF-8"));
+        assertEquals(NDJSON, ArtifactFormat.fromMediaType("application/x-ndjson"));
+        assertEquals(SMILE, ArtifactFormat.fromMediaType("APPLICATION/X-JACKSON-SMILE"));
+        assertEquals(BINARY, ArtifactFormat.fromMediaType("application/vnd.maven-easy-index.artifacts"));
+        assertNull(ArtifactFormat.fromMediaType("text/plain"));
+        assertNull(ArtifactFormat.fromMediaType(null));
+    }
+
+    @Test
+    public void allFormatsRoundtrip() throws IOException {
+        var in = someArtifacts(100);
+        for (var f : ArtifactFormat.values()) {
+            assertEquals(in, roundtrip(f, in), f.name());
+        }
+    }
+
+    @Test
+    public void allFormatsRoundtripEmpty() throws IOException {
+        for (var f : ArtifactFormat.values()) {
+            assertEquals(List.of(), roundtrip(f, List.of()), f.name());
+        }
+    }
+
+    @Test
+    public void jsonIsIdenticalToArtifactModule() throws IOException {
+        var in = someArtifacts(3);
+        var expected = new ObjectMapper().registerModule(new ArtifactModule()).writeValueAsString(in);
+        assertEquals(expected, new String(write(JSON, in), UTF_8));
+    }
+
+    @Test
+    public void ndjsonHasOneArtifactPerLine() throws IOException {
+        var in = someArtifacts(2);
+        var actual = new String(write(NDJSON, in), UTF_8);
+        assertEquals("\"g0:a0:1.0:jar:0\"\n\"g1:a1:1.1:jar:1@http%3A//some.repo/\"\n", actual);
+    }
+
+    @Test
+    public void binaryReusesStrings() throws IOException {
+        var in = new ArrayList<Artifact>();
+        for (var i = 0; i < 100; i++) {
+            in.add(new Artifact("some.group", "some-artifact", "1.2.3", "jar").setReleaseDate(i).setRepository(REPO_CENTRAL));
+        }
+        var json = write(JSON, in);
+        var bin = write(BINARY, in);
+        assertTrue(bin.length * 5 < json.length, bin.length + " vs. " + json.length);
+        assertEquals(in, read(BINARY, bin));
+    }
+
+    @Test
+    public void binaryCentralRepoAndNullAreRestoredAsCentral() throws IOException {
+        var a = new Artifact("g", "a", "v", "p");
+        var b = new Artifact("g", "a", "v", "p").setRepository(REPO_CENTRAL);
+        var actual = roundtrip(BINARY, List.of(a, b));
+        assertEquals(REPO_CENTRAL, actual.get(0).repository);
+        assertEquals(REPO_CENTRAL, actual.get(1).repository);
+    }
+
+    @Test
+    public void binaryFailsForWrongMagic() {
+        var e = assertThrows(IOException.class, () -> read(BINARY, "not binary".getBytes(UTF_8)));
+        assertEquals("Not a binary artifact stream", e.getMessage());
+    }
+
+    @Test
+    public void binaryFailsForTruncatedStreams() throws IOException {
+        var bytes = write(BINARY, someArtifacts(10));
+        var truncated = Arrays.copyOf(bytes, bytes.length - 1);
+        assertThrows(EOFException.class, () -> read(BINARY, truncated));
+    }
+
+    @Test
+    public void binaryFailsForInvalidReferences() throws IOException {
+        var bytes = write(BINARY, someArtifacts(1));
+        // first string ref of the first record: "new string" becomes an unknown reference
+        bytes[6] = 2;
+        var e = assertThrows(IOException.class, () -> read(BINARY, bytes));
+        assertEquals("Invalid string reference: 2", e.getMessage());
+    }
+
+    private static List<Artifact> someArtifacts(int num) {
+        var artifacts = new ArrayList<Artifact>();
+        for (var i = 0; i < num; i++) {
+            var a = new Artifact("g" + (i % 7), "a" + (i % 13), "1." + i, i % 5 == 4 ? "pom" : "jar").setReleaseDate(i);
+            a.repository = i % 2 == 0 ? REPO_CENTRAL : "http://some.repo/";
+            artifacts.add(a);
+        }
+        return artifacts;
+    }
+
+    private static List<Artifact> roundtrip(ArtifactFormat f, List<Artifact> artifacts) throws IOException {
+        return read(f, write(f, artifacts));
+    }
+
+    private static byte[] write(ArtifactFormat f, List<Artifact> artifacts) throws IOException {
+        var baos = new ByteArrayOutputStream();
+        try (var w = f.newWriter(baos)) {
+            for (var a : artifacts) {
+                w.write(a);
+            }
+        }
+        return baos.toByteArray();
+    }
+
+    private static List<Artifact> read(ArtifactFormat f, byte[] bytes) throws IOException {
+        try (var r = f.newReader(new ByteArrayInputStream(bytes))) {
+            return r.readAll();
+        }
+    }
+}
\ No newline at end of file
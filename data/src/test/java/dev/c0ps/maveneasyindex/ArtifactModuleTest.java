@@ -19,11 +19,15 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 public class ArtifactModuleTest {
@@ -160,6 +164,91 @@ public class ArtifactModuleTest {
         assertRoundtrip(a);
     }
 
+    @Test
+    public void percentSignsAreNotEncoded() throws JsonProcessingException {
+        var a = new Artifact("g%", "a%3", "v%4", "p%40").setRepository("r%3A");
+        var json = om.writeValueAsString(a);
+        assertEquals("\"g%:a%3:v%4:p%40:0@r%3A\"", json);
+
+        var b = om.readValue(json, Artifact.class);
+        assertEquals("p@", b.packaging);
+        assertEquals("r:", b.repository);
+    }
+
+    @Test
+    public void encodedMarkersAreDecodedOnce() throws JsonProcessingException {
+        var a = om.readValue("\"%%3A40:%4%3A0:v:p:1\"", Artifact.class);
+        assertEquals("%:40", a.groupId);
+        assertEquals("%4:0", a.artifactId);
+    }
+
+    @Test
+    public void trailingSeparatorsAreIgnored() throws JsonProcessingException {
+        var a = om.readValue("\"g:a:v:p:1234::\"", Artifact.class);
+        assertEquals(new Artifact("g", "a", "v", "p").setReleaseDate(1234).setRepository(REPO_CENTRAL), a);
+    }
+
+    @Test
+    public void emptyFieldsAreKept() throws JsonProcessingException {
+        var a = om.readValue("\"::v::1234\"", Artifact.class);
+        assertEquals("", a.groupId);
+        assertEquals("", a.artifactId);
+        assertEquals("v", a.version);
+        assertEquals("", a.packaging);
+    }
+
+    @Test
+    public void tooManyParts() throws JsonProcessingException {
+        var json = "\"g:a:v:p:1:x\"";
+        var e = assertThrows(JsonParseException.class, () -> {
+            om.readValue(json, Artifact.class);
+        });
+        assertEquals("Cannot parse artifact: g:a:v:p:1:x", e.getMessage());
+    }
+
+    @Test
+    public void extremeReleaseDates() {
+        for (var date : new long[] { 0, -1, Long.MIN_VALUE, Long.MAX_VALUE }) {
+            var a = someArtifact().setReleaseDate(date);
+            assertRoundtrip(a);
+        }
+    }
+
+    @Test
+    public void invalidReleaseDates() {
+        for (var date : new String[] { "-", "+", "1-2", "9223372036854775808" }) {
+            var json = "\"g:a:v:p:" + date + "@r\"";
+            var e = assertThrows(JsonParseException.class, () -> {
+                om.readValue(json, Artifact.class);
+            });
+            assertEquals("Cannot parse release date: " + json.substring(1, json.length() - 1), e.getMessage());
+        }
+    }
+
+    @Test
+    public void signedReleaseDates() throws JsonProcessingException {
+        assertEquals(12, om.readValue("\"g:a:v:p:+12\"", Artifact.class).releaseDate);
+        assertEquals(-12, om.readValue("\"g:a:v:p:-12\"", Artifact.class).releaseDate);
+    }
+
+    @Test
+    public void longValuesAreSupported() {
+        var a = someArtifact();
+        a.groupId = "g:".repeat(50_000);
+        a.repository = "@".repeat(50_000);
+        assertRoundtrip(a);
+    }
+
+    @Test
+    public void listsAreSupported() throws JsonProcessingException {
+        var in = new ArrayList<Artifact>();
+        for (var i = 0; i < 1000; i++) {
+            in.add(someArtifact().setReleaseDate(i));
+        }
+        var out = om.readValue(om.writeValueAsString(in), new TypeReference<List<Artifact>>() {});
+        assertEquals(in, out);
+    }
+
     private void assertRoundtrip(Artifact a) {
         var b = roundtrip(a);
         assertNotSame(a, b);
@@ -17,6 +17,8 @@ package dev.c0ps.maveneasyindex;
 
 import com.beust.jcommander.Parameter;
 
+import dev.c0ps.maveneasyindex.BoundedCache.EvictionPolicy;
+
 public class Args {
 
     @Parameter(names = "--baseFolder", arity = 1, description = "Folder for index files")
@@ -24,4 +26,64 @@ public class Args {
 
     @Parameter(names = "--url", arity = 1, description = "URL pattern for the index files")
     public String indexUrl = "https://repo1.maven.org/maven2/.index/nexus-maven-repository-index.%d.gz";
+
+    @Parameter(names = "--fullIndex", arity = 1, description = "Ingest the full (non-incremental) index in the background, which is then served through /full")
+    public boolean fullIndex = false;
+
+    @Parameter(names = "--fullIndexUrl", arity = 1, description = "URL of the full index")
+    public String fullIndexUrl = "https://repo1.maven.org/maven2/.index/nexus-maven-repository-index.gz";
+
+    @Parameter(names = "--fullIndexPartitions", arity = 1, description = "Number of partitions of the full index, memory during ingestion is bounded by the largest one")
+    public int fullIndexPartitions = 256;
+
+    @Parameter(names = "--downloadRetries", arity = 1, description = "Number of times a failed download is retried (partial downloads are resumed)")
+    public int downloadRetries = 3;
+
+    @Parameter(names = "--retryBackoff", arity = 1, description = "Milliseconds before the first retry of a download, doubled for every further retry")
+    public long retryBackoffMs = 1000;
+
+    @Parameter(names = "--maxDownloads", arity = 1, description = "Maximum number of concurrent downloads from the repository, further downloads are queued")
+    public int maxDownloads = 4;
+
+    @Parameter(names = "--maxDownloadRate", arity = 1, description = "Maximum combined download rate in bytes per second (0 is unlimited)")
+    public long maxDownloadRate = 0;
+
+    @Parameter(names = "--verifyChecksums", arity = 1, description = "Verify downloaded index files against the published .sha1 or .md5 checksums")
+    public boolean verifyChecksums = true;
+
+    @Parameter(names = "--cacheSize", arity = 1, description = "Maximum (estimated) size of the artifact cache in MB")
+    public long cacheSizeMb = 512;
+
+    @Parameter(names = "--cacheEviction", arity = 1, description = "Eviction policy of the artifact cache (LRU, LFU, or TTL)")
+    public EvictionPolicy cacheEviction = EvictionPolicy.LRU;
+
+    @Parameter(names = "--cacheTtl", arity = 1, description = "Time-to-live of cached artifacts in minutes (only used for TTL eviction)")
+    public long cacheTtlMin = 60;
+
+    @Parameter(names = "--responseCacheSize", arity = 1, description = "Maximum size of the cache for encoded responses in MB")
+    public long responseCacheSizeMb = 256;
+
+    @Parameter(names = "--nativeReader", arity = 1, description = "Decode index files directly instead of through Lucene documents")
+    public boolean nativeReader = false;
+
+    @Parameter(names = "--threads", arity = 1, description = "Number of indices that are downloaded and parsed in parallel for batch requests")
+    public int threads = Runtime.getRuntime().availableProcessors();
+
+    @Parameter(names = "--loadThreads", arity = 1, description = "Number of threads that load indices for requests that miss the caches")
+    public int loadThreads = Runtime.getRuntime().availableProcessors();
+
+    @Parameter(names = "--virtualThreads", arity = 1, description = "Load indices for requests that miss the caches on virtual threads (requires Java 21)")
+    public boolean virtualThreads = false;
+
+    @Parameter(names = "--requestTimeout", arity = 1, description = "Seconds after which a request that waits for an index fails with 503 (0 waits indefinitely)")
+    public long requestTimeoutSec = 300;
+
+    @Parameter(names = "--prefetchInterval", arity = 1, description = "Minutes between checks for newly published indices (0 disables prefetching)")
+    public long prefetchIntervalMin = 0;
+
+    @Parameter(names = "--prefetchDepth", arity = 1, description = "Number of newest indices that are prefetched and kept in the cache")
+    public int prefetchDepth = 3;
+
+    @Parameter(names = "--missingTtl", arity = 1, description = "Seconds for which an index that has not been published yet is reported as missing without asking the repository again")
+    public long missingTtlSec = 60;
 }
\ No newline at end of file
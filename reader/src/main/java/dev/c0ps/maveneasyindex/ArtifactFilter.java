@@ -0,0 +1,120 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.lucene.document.Document;
+
+/**
+ * Restricts the artifacts of an index by packaging, group prefix, and release
+ * date. All restrictions are optional and have to be met at the same time. The
+ * filter can be applied to the raw index documents, so artifacts that do not
+ * match are skipped before they are created.
+ */
+public class ArtifactFilter {
+
+    public static final ArtifactFilter NONE = new ArtifactFilter(null, null, null, null);
+
+    private final Set<String> packagings;
+    private final List<String> groupPrefixes;
+    private final long releasedAfter;
+    private final long releasedBefore;
+
+    /**
+     * @param packagings     accepted packaging types, all if null or empty
+     * @param groupPrefixes  accepted prefixes of the groupId, all if null or empty
+     * @param releasedAfter  only artifacts released after this time (exclusive)
+     * @param releasedBefore only artifacts released before this time (exclusive)
+     */
+    public ArtifactFilter(Collection<String> packagings, Collection<String> groupPrefixes, Long releasedAfter, Long releasedBefore) {
+        this.packagings = packagings == null || packagings.isEmpty() ? null : Set.copyOf(packagings);
+        this.groupPrefixes = groupPrefixes == null || groupPrefixes.isEmpty() ? null : List.copyOf(groupPrefixes);
+        this.releasedAfter = releasedAfter == null ? Long.MIN_VALUE : releasedAfter;
+        this.releasedBefore = releasedBefore == null ? Long.MAX_VALUE : releasedBefore;
+    }
+
+    public boolean isEmpty() {
+        return packagings == null && groupPrefixes == null && releasedAfter == Long.MIN_VALUE && releasedBefore == Long.MAX_VALUE;
+    }
+
+    public boolean matches(Artifact a) {
+        return matchesPackaging(a.packaging) && matchesGroup(a.groupId) && matchesDate(a.releaseDate);
+    }
+
+    /**
+     * Same result as {@link #matches(Artifact)} for the artifact that would be
+     * created from the document. Documents that cannot be converted into an
+     * artifact might match.
+     */
+    public boolean matches(Document doc) {
+        return matches(doc.get("e"), doc.get("g"), doc.get("m"));
+    }
+
+    /** Like {@link #matches(Document)}, for the raw values of the index fields e, g, and m. */
+    boolean matches(String extension, String g, String m) {
+        if (packagings != null) {
+            if (extension == null || !matchesPackaging(IndexFileReader.shortenPackaging(extension))) {
+                return false;
+            }
+        }
+        if (groupPrefixes != null) {
+            if (g == null || !matchesGroup(g)) {
+                return false;
+            }
+        }
+        if (releasedAfter != Long.MIN_VALUE || releasedBefore != Long.MAX_VALUE) {
+            if (m == null) {
+                return false;
+            }
+            try {
+                return matchesDate(Long.parseLong(m));
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean matchesPackaging(String packaging) {
+        return packagings == null || packagings.contains(packaging);
+    }
+
+    private boolean matchesGroup(String groupId) {
+        if (groupPrefixes == null) {
+            return true;
+        }
+        for (var prefix : groupPrefixes) {
+            if (groupId.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean matchesDate(long releaseDate) {
+        return releaseDate > releasedAfter && releaseDate < releasedBefore;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("packaging=%s, groupPrefix=%s, releasedAfter=%s, releasedBefore=%s", packagings, groupPrefixes, //
+                releasedAfter == Long.MIN_VALUE ? null : releasedAfter, //
+                releasedBefore == Long.MAX_VALUE ? null : releasedBefore);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import static dev.c0ps.maveneasyindex.VarInts.readVarInt;
+import static dev.c0ps.maveneasyindex.VarInts.writeVarInt;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32C;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persists parsed artifacts next to the downloaded index file, so an index does
+ * not have to be parsed again after a restart. The binary format starts with a
+ * version and the checksum of the index file it was created from, followed by a
+ * string dictionary and the artifacts as dictionary references. Stores that are
+ * outdated or do not match their index file are ignored.
+ */
+public class ArtifactStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ArtifactStore.class);
+
+    private static final int MAGIC = 0x4D454941; // "MEIA"
+    private static final int VERSION = 1;
+    private static final String SUFFIX = ".artifacts";
+
+    public Set<Artifact> read(File indexFile) {
+        var storeFile = getStoreFileFor(indexFile);
+        if (!storeFile.exists()) {
+            return null;
+        }
+        try ( //
+                var fis = new FileInputStream(storeFile); //
+                var in = new DataInputStream(new BufferedInputStream(fis))) {
+
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                LOG.info("Ignoring artifact store with unknown format: {}", storeFile);
+                return null;
+            }
+            if (in.readLong() != indexFile.length() || in.readLong() != checksum(indexFile)) {
+                LOG.info("Ignoring artifact store that does not match its index file: {}", storeFile);
+                return null;
+            }
+
+            var numStrings = readVarInt(in);
+            var strings = new String[numStrings];
+            for (var i = 0; i < numStrings; i++) {
+                var bytes = new byte[readVarInt(in)];
+                in.readFully(bytes);
+                strings[i] = new String(bytes, UTF_8);
+            }
+
+            var numArtifacts = readVarInt(in);
+            var artifacts = new HashSet<Artifact>(numArtifacts * 4 / 3 + 1);
+            for (var i = 0; i < numArtifacts; i++) {
+                var a = new Artifact();
+                a.groupId = strings[readVarInt(in)];
+                a.artifactId = strings[readVarInt(in)];
+                a.version = strings[readVarInt(in)];
+                a.packaging = strings[readVarInt(in)];
+                a.releaseDate = in.readLong();
+                a.repository = strings[readVarInt(in)];
+                artifacts.add(a);
+            }
+            LOG.info("Read {} artifacts from store {}", artifacts.size(), storeFile);
+            return artifacts;
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Cannot read artifact store {}", storeFile, e);
+            return null;
+        }
+    }
+
+    public void write(File indexFile, Set<Artifact> artifacts) {
+        var storeFile = getStoreFileFor(indexFile);
+        try {
+            var part = File.createTempFile(storeFile.getName() + ".", ".part", storeFile.getParentFile());
+            try {
+                try ( //
+                        var fos = new FileOutputStream(part); //
+                        var out = new DataOutputStream(new BufferedOutputStream(fos))) {
+                    writeStore(out, indexFile, artifacts);
+                }
+                Files.move(part.toPath(), storeFile.toPath(), ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(part.toPath());
+            }
+            LOG.info("Stored {} artifacts in {}", artifacts.size(), storeFile);
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Cannot write artifact store {}", storeFile, e);
+        }
+    }
+
+    private static void writeStore(DataOutputStream out, File indexFile, Set<Artifact> artifacts) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(indexFile.length());
+        out.writeLong(checksum(indexFile));
+
+        var dict = new LinkedHashMap<String, Integer>();
+        var refs = new ArrayList<int[]>(artifacts.size());
+        for (var a : artifacts) {
+            refs.add(new int[] { //
+                    ref(dict, a.groupId), ref(dict, a.artifactId), ref(dict, a.version), //
+                    ref(dict, a.packaging), ref(dict, a.repository) });
+        }
+
+        writeVarInt(out, dict.size());
+        for (var s : dict.keySet()) {
+            var bytes = s.getBytes(UTF_8);
+            writeVarInt(out, bytes.length);
+            out.write(bytes);
+        }
+
+        writeVarInt(out, artifacts.size());
+        var i = 0;
+        for (var a : artifacts) {
+            var r = refs.get(i++);
+            writeVarInt(out, r[0]);
+            writeVarInt(out, r[1]);
+            writeVarInt(out, r[2]);
+            writeVarInt(out, r[3]);
+            out.writeLong(a.releaseDate);
+            writeVarInt(out, r[4]);
+        }
+    }
+
+    private static int ref(Map<String, Integer> dict, String s) {
+        if (s == null) {
+            throw new IllegalArgumentException("Cannot store artifacts with missing fields");
+        }
+        return dict.computeIfAbsent(s, x -> dict.size());
+    }
+
+    private static File getStoreFileFor(File indexFile) {
+        var name = indexFile.getName();
+        var base = name.endsWith(".tmp") ? name.substring(0, name.length() - 4) : name;
+        return new File(indexFile.getParentFile(), base + SUFFIX);
+    }
+
+    private static long checksum(File f) throws IOException {
+        var crc = new CRC32C();
+        try (var in = new FileInputStream(f)) {
+            var buf = new byte[64 * 1024];
+            int len;
+            while ((len = in.read(buf)) != -1) {
+                crc.update(buf, 0, len);
+            }
+        }
+        return crc.getValue();
+    }
+}
\ No newline at end of file
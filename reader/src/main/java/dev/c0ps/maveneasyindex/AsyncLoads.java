@@ -0,0 +1,150 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+
+/**
+ * Runs the loads of requests that miss the caches on a dedicated executor, so
+ * slow downloads do not block the threads of the HTTP server. Concurrent
+ * requests for the same key share one load. Once no request is waiting for it
+ * anymore, a load that has not started yet is skipped, but a running load is
+ * never interrupted: the download and parsing behind it are shared with other
+ * keys, batch requests, and the prefetcher, which would fail as well.
+ */
+@Singleton
+public class AsyncLoads {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncLoads.class);
+
+    private static final String CANCELLED = "maven_easy_index_async_loads_cancelled_total";
+
+    private final ExecutorService executor;
+    private final Map<String, Load<?>> loads = new ConcurrentHashMap<>();
+
+    @Inject
+    public AsyncLoads(@Named("AsyncLoads.executor") ExecutorService executor) {
+        this.executor = executor;
+        Metrics.DEFAULT.gauge("maven_easy_index_async_loads", "Number of loads that requests are waiting for", loads::size);
+    }
+
+    /**
+     * Starts a load or joins the running load with the same key. The returned
+     * waiter must be released once its result is not needed anymore, e.g.,
+     * because the client has disconnected.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Waiter<T> submit(String key, Supplier<T> work) {
+        while (true) {
+            var load = (Load<T>) loads.computeIfAbsent(key, k -> new Load<>(k, work));
+            if (load.join()) {
+                return new Waiter<>(load);
+            }
+            // the load has just been cancelled, start over
+            loads.remove(key, load);
+        }
+    }
+
+    public int size() {
+        return loads.size();
+    }
+
+    private class Load<T> implements Runnable {
+
+        private final String key;
+        private final Supplier<T> work;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        private int waiters;
+        private boolean isCancelled;
+        private Future<?> task;
+
+        private Load(String key, Supplier<T> work) {
+            this.key = key;
+            this.work = work;
+        }
+
+        private synchronized boolean join() {
+            if (isCancelled) {
+                return false;
+            }
+            waiters++;
+            if (task == null) {
+                task = executor.submit(this);
+            }
+            return true;
+        }
+
+        private synchronized void leave() {
+            if (--waiters > 0 || result.isDone()) {
+                return;
+            }
+            isCancelled = true;
+            loads.remove(key, this);
+            // only stop waiting, a running load finishes and fills the caches
+            task.cancel(false);
+            result.cancel(false);
+            Metrics.DEFAULT.counter(CANCELLED, "Number of loads that were abandoned because no request was waiting anymore").inc();
+            LOG.info("Abandoned load {}, no request is waiting for it anymore", key);
+        }
+
+        @Override
+        public void run() {
+            try {
+                result.complete(work.get());
+            } catch (RuntimeException | Error e) {
+                result.completeExceptionally(e);
+            } finally {
+                loads.remove(key, this);
+            }
+        }
+    }
+
+    public static class Waiter<T> {
+
+        private final AsyncLoads.Load<T> load;
+        private final AtomicBoolean isReleased = new AtomicBoolean();
+
+        private Waiter(AsyncLoads.Load<T> load) {
+            this.load = load;
+        }
+
+        public CompletionStage<T> getResult() {
+            return load.result.minimalCompletionStage();
+        }
+
+        /** Can be called repeatedly, only the first call counts. */
+        public void release() {
+            if (isReleased.compareAndSet(false, true)) {
+                load.leave();
+            }
+        }
+    }
+}
\ No newline at end of file
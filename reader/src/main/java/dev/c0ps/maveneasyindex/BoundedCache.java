@@ -0,0 +1,285 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Thread-safe cache that is bounded by the estimated size of its values.
+ * Lookups are lock-free, only inserts that exceed the size limit synchronize
+ * to select and remove victims according to the configured
+ * {@link EvictionPolicy}.
+ */
+public class BoundedCache<K, V> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BoundedCache.class);
+
+    public enum EvictionPolicy {
+        /** evict the entry that has not been accessed for the longest time */
+        LRU,
+        /** evict the entry with the fewest hits */
+        LFU,
+        /** expire entries after a fixed time, evict the oldest entry when full */
+        TTL
+    }
+
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final Map<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+    private final Object evictionLock = new Object();
+
+    private final long maxWeight;
+    private final ToLongFunction<V> weigher;
+    private final EvictionPolicy policy;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+
+    private final AtomicLong accessCounter = new AtomicLong();
+    private final AtomicLong weight = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private volatile Metrics.Histogram entrySizes;
+
+    public BoundedCache(long maxWeight, ToLongFunction<V> weigher, EvictionPolicy policy, long ttl, TimeUnit ttlUnit) {
+        this(maxWeight, weigher, policy, ttl, ttlUnit, System::nanoTime);
+    }
+
+    BoundedCache(long maxWeight, ToLongFunction<V> weigher, EvictionPolicy policy, long ttl, TimeUnit ttlUnit, LongSupplier nanoClock) {
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.policy = policy;
+        this.ttlNanos = ttlUnit.toNanos(ttl);
+        this.nanoClock = nanoClock;
+    }
+
+    public V get(K key) {
+        var e = entries.get(key);
+        if (e == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (isExpired(e, nanoClock.getAsLong())) {
+            if (remove(key, e)) {
+                LOG.info("Expired cache entry {} ({} bytes)", key, e.weight);
+            }
+            misses.incrementAndGet();
+            return null;
+        }
+        e.lastAccess = accessCounter.incrementAndGet();
+        e.hits.incrementAndGet();
+        hits.incrementAndGet();
+        return e.value;
+    }
+
+    /**
+     * Returns the cached value or loads it on a miss. Concurrent misses for the
+     * same key are coalesced, the loader runs only once and all callers receive
+     * its result (or its exception).
+     */
+    public V getOrLoad(K key, Function<K, V> loader) {
+        var value = get(key);
+        if (value != null) {
+            return value;
+        }
+        var load = new CompletableFuture<V>();
+        var running = loading.putIfAbsent(key, load);
+        if (running != null) {
+            return await(running);
+        }
+        try {
+            // a concurrent load might have finished between the lookup and now
+            value = peek(key);
+            if (value == null) {
+                value = loader.apply(key);
+                put(key, value);
+            }
+            load.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, load);
+        }
+    }
+
+    /** Checks for a cached value without counting a hit or miss. */
+    public boolean contains(K key) {
+        return peek(key) != null;
+    }
+
+    private V peek(K key) {
+        var e = entries.get(key);
+        return e == null || isExpired(e, nanoClock.getAsLong()) ? null : e.value;
+    }
+
+    private static <V> V await(CompletableFuture<V> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    public void put(K key, V value) {
+        var w = weigher.applyAsLong(value);
+        if (w > maxWeight) {
+            LOG.warn("Not caching {}, estimated size ({} bytes) exceeds the cache limit ({} bytes)", key, w, maxWeight);
+            return;
+        }
+        var sizes = entrySizes;
+        if (sizes != null) {
+            sizes.observe(w);
+        }
+        var e = new Entry<V>(value, w, nanoClock.getAsLong(), accessCounter.incrementAndGet());
+        var old = entries.put(key, e);
+        weight.addAndGet(old == null ? w : w - old.weight);
+
+        if (weight.get() > maxWeight) {
+            evict(key);
+        }
+    }
+
+    private void evict(K inserted) {
+        synchronized (evictionLock) {
+            var now = nanoClock.getAsLong();
+            if (policy == EvictionPolicy.TTL) {
+                for (var mapEntry : entries.entrySet()) {
+                    if (isExpired(mapEntry.getValue(), now)) {
+                        remove(mapEntry.getKey(), mapEntry.getValue());
+                    }
+                }
+            }
+            while (weight.get() > maxWeight) {
+                var victim = selectVictim(inserted);
+                if (victim == null) {
+                    return;
+                }
+                if (remove(victim.getKey(), victim.getValue())) {
+                    LOG.info("Evicted cache entry {} ({} bytes), {}", victim.getKey(), victim.getValue().weight, stats());
+                }
+            }
+        }
+    }
+
+    // the inserted entry is spared, otherwise LFU would always evict it right away
+    private Map.Entry<K, Entry<V>> selectVictim(K inserted) {
+        Map.Entry<K, Entry<V>> victim = null;
+        for (var candidate : entries.entrySet()) {
+            if (candidate.getKey().equals(inserted)) {
+                continue;
+            }
+            if (victim == null || isBetterVictim(candidate.getValue(), victim.getValue())) {
+                victim = candidate;
+            }
+        }
+        return victim;
+    }
+
+    private boolean isBetterVictim(Entry<V> a, Entry<V> b) {
+        switch (policy) {
+        case LFU:
+            var ha = a.hits.get();
+            var hb = b.hits.get();
+            return ha < hb || (ha == hb && a.lastAccess < b.lastAccess);
+        case TTL:
+            return a.created < b.created;
+        case LRU:
+        default:
+            return a.lastAccess < b.lastAccess;
+        }
+    }
+
+    private boolean isExpired(Entry<V> e, long now) {
+        return policy == EvictionPolicy.TTL && now - e.created > ttlNanos;
+    }
+
+    private boolean remove(K key, Entry<V> e) {
+        if (entries.remove(key, e)) {
+            weight.addAndGet(-e.weight);
+            evictions.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getWeight() {
+        return weight.get();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /** Exposes the statistics of this cache in the registry, distinguished by the name. */
+    public void registerMetrics(Metrics metrics, String name) {
+        metrics.counter("maven_easy_index_cache_hits_total", "Cache lookups that found an entry", this::getHitCount, "cache", name);
+        metrics.counter("maven_easy_index_cache_misses_total", "Cache lookups that did not find an entry", this::getMissCount, "cache", name);
+        metrics.counter("maven_easy_index_cache_evictions_total", "Cache entries that have been evicted or expired", this::getEvictionCount, "cache", name);
+        metrics.gauge("maven_easy_index_cache_entries", "Number of cache entries", this::size, "cache", name);
+        metrics.gauge("maven_easy_index_cache_bytes", "Estimated size of all cache entries", this::getWeight, "cache", name);
+        metrics.gauge("maven_easy_index_cache_max_bytes", "Size limit of the cache", () -> maxWeight, "cache", name);
+        entrySizes = metrics.histogram("maven_easy_index_cache_entry_bytes", "Estimated size of inserted cache entries", Metrics.SIZE_BUCKETS, "cache", name);
+    }
+
+    public String stats() {
+        return String.format("entries: %d, size: %d/%d bytes, hits: %d, misses: %d, evictions: %d", //
+                size(), getWeight(), maxWeight, getHitCount(), getMissCount(), getEvictionCount());
+    }
+
+    private static class Entry<V> {
+
+        private final V value;
+        private final long weight;
+        private final long created;
+        private final AtomicLong hits = new AtomicLong();
+        private volatile long lastAccess;
+
+        private Entry(V value, long weight, long created, long lastAccess) {
+            this.value = value;
+            this.weight = weight;
+            this.created = created;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Immutable, memory-compact set of artifacts for long-lived caching. Instead of
+ * one object per artifact (plus its strings and a hash-set entry), all
+ * artifacts are stored in primitive columns that reference a shared string
+ * dictionary. Rows are sorted by coordinate, which allows a binary search for
+ * {@link #contains(Object)}, and the hash code of the set is precomputed. Iterating
+ * creates a fresh {@link Artifact} per row, so modifications of these
+ * instances do not affect the set.
+ */
+public class CompactArtifactSet extends AbstractSet<Artifact> {
+
+    private static final Comparator<Artifact> ORDER = Comparator //
+            .comparing((Artifact a) -> a.groupId) //
+            .thenComparing(a -> a.artifactId) //
+            .thenComparing(a -> a.version) //
+            .thenComparing(a -> a.packaging) //
+            .thenComparingLong(a -> a.releaseDate) //
+            .thenComparing(a -> a.repository, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final String[] dict;
+    private final int[] groupIds;
+    private final int[] artifactIds;
+    private final int[] versions;
+    private final int[] packagings;
+    private final int[] repositories;
+    private final long[] releaseDates;
+    private final int hashCode;
+
+    private CompactArtifactSet(Artifact[] sorted) {
+        var n = sorted.length;
+        groupIds = new int[n];
+        artifactIds = new int[n];
+        versions = new int[n];
+        packagings = new int[n];
+        repositories = new int[n];
+        releaseDates = new long[n];
+
+        var refs = new HashMap<String, Integer>();
+        var h = 0;
+        for (var i = 0; i < n; i++) {
+            var a = sorted[i];
+            groupIds[i] = ref(refs, a.groupId);
+            artifactIds[i] = ref(refs, a.artifactId);
+            versions[i] = ref(refs, a.version);
+            packagings[i] = ref(refs, a.packaging);
+            repositories[i] = ref(refs, a.repository);
+            releaseDates[i] = a.releaseDate;
+            h += a.hashCode();
+        }
+        hashCode = h;
+
+        dict = new String[refs.size()];
+        refs.forEach((s, idx) -> dict[idx] = s);
+    }
+
+    public static CompactArtifactSet of(Collection<Artifact> artifacts) {
+        if (artifacts instanceof CompactArtifactSet) {
+            return (CompactArtifactSet) artifacts;
+        }
+        // de-duplicate like any other set
+        var unique = artifacts instanceof Set ? artifacts : new LinkedHashSet<>(artifacts);
+        var sorted = unique.toArray(new Artifact[0]);
+        for (var a : sorted) {
+            Objects.requireNonNull(a.groupId, "groupId");
+            Objects.requireNonNull(a.artifactId, "artifactId");
+            Objects.requireNonNull(a.version, "version");
+            Objects.requireNonNull(a.packaging, "packaging");
+        }
+        Arrays.sort(sorted, ORDER);
+        return new CompactArtifactSet(sorted);
+    }
+
+    private static int ref(HashMap<String, Integer> refs, String s) {
+        if (s == null) {
+            return -1;
+        }
+        return refs.computeIfAbsent(s, x -> refs.size());
+    }
+
+    private String str(int ref) {
+        return ref == -1 ? null : dict[ref];
+    }
+
+    /**
+     * Rows are sorted by coordinate, so the order (and therefore the index of an
+     * artifact) is the same for every set of the same artifacts. Clients can
+     * rely on it to fetch a large set in pages.
+     */
+    public Artifact get(int idx) {
+        var a = new Artifact();
+        a.groupId = dict[groupIds[idx]];
+        a.artifactId = dict[artifactIds[idx]];
+        a.version = dict[versions[idx]];
+        a.packaging = dict[packagings[idx]];
+        a.releaseDate = releaseDates[idx];
+        a.repository = str(repositories[idx]);
+        return a;
+    }
+
+    @Override
+    public int size() {
+        return releaseDates.length;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof Artifact)) {
+            return false;
+        }
+        var a = (Artifact) o;
+        if (a.groupId == null || a.artifactId == null || a.version == null || a.packaging == null) {
+            return false;
+        }
+        var lo = 0;
+        var hi = size() - 1;
+        while (lo <= hi) {
+            var mid = (lo + hi) >>> 1;
+            var cmp = compare(mid, a);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // same order as ORDER, but without materializing the row
+    private int compare(int row, Artifact a) {
+        var cmp = dict[groupIds[row]].compareTo(a.groupId);
+        if (cmp == 0) {
+            cmp = dict[artifactIds[row]].compareTo(a.artifactId);
+        }
+        if (cmp == 0) {
+            cmp = dict[versions[row]].compareTo(a.version);
+        }
+        if (cmp == 0) {
+            cmp = dict[packagings[row]].compareTo(a.packaging);
+        }
+        if (cmp == 0) {
+            cmp = Long.compare(releaseDates[row], a.releaseDate);
+        }
+        if (cmp == 0) {
+            cmp = Objects.compare(str(repositories[row]), a.repository, Comparator.nullsFirst(Comparator.naturalOrder()));
+        }
+        return cmp;
+    }
+
+    @Override
+    public Iterator<Artifact> iterator() {
+        return new Iterator<Artifact>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < size();
+            }
+
+            @Override
+            public Artifact next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return get(next++);
+            }
+        };
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    /** Estimated heap footprint in bytes, including the dictionary strings. */
+    public long estimateSize() {
+        long size = 64L + size() * (5 * 4L + 8L);
+        for (var s : dict) {
+            size += 40 + s.length();
+        }
+        return size;
+    }
+}
\ No newline at end of file
@@ -16,6 +16,10 @@
 package dev.c0ps.maveneasyindex;
 
 import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Provides;
@@ -24,6 +28,7 @@ import dev.c0ps.diapper.AssertArgs;
 import dev.c0ps.diapper.InjectorConfig;
 import dev.c0ps.diapper.InjectorConfigBase;
 import jakarta.inject.Named;
+import jakarta.inject.Singleton;
 
 @InjectorConfig
 public class Config extends InjectorConfigBase {
@@ -58,4 +63,175 @@ public class Config extends InjectorConfigBase {
                 .that(a -> new File(a.baseFolder).isDirectory(), "folder is not a folder");
         return args.baseFolder;
     }
+
+    @Provides
+    @Named("RepositoryUtils.missingTtl")
+    public long provideMissingTtl() {
+        AssertArgs.assertFor(args) //
+                .that(a -> a.missingTtlSec >= 0, "missing ttl cannot be negative");
+        return args.missingTtlSec;
+    }
+
+    @Provides
+    @Named("FullIndex.enabled")
+    public boolean provideFullIndexEnabled() {
+        return args.fullIndex;
+    }
+
+    @Provides
+    @Named("FullIndex.url")
+    public String provideFullIndexUrl() {
+        AssertArgs.assertFor(args) //
+                .notNull(a -> a.fullIndexUrl, "full index url cannot be null") //
+                .that(a -> !a.fullIndexUrl.isEmpty(), "full index url cannot be empty");
+        return args.fullIndexUrl;
+    }
+
+    @Provides
+    @Named("FullIndex.partitions")
+    public int provideFullIndexPartitions() {
+        AssertArgs.assertFor(args) //
+                .that(a -> a.fullIndexPartitions > 0, "number of full index partitions must be positive");
+        return args.fullIndexPartitions;
+    }
+
+    @Provides
+    @Named("HttpDownloader.retries")
+    public int provideDownloadRetries() {
+        AssertArgs.assertFor(args) //
+                .that(a -> a.downloadRetries >= 0, "download retries cannot be negative");
+        return args.downloadRetries;
+    }
+
+    @Provides
+    @Named("HttpDownloader.backoff")
+    public long provideRetryBackoff() {
+        AssertArgs.assertFor(args) //
+                .that(a -> a.retryBackoffMs >= 0, "retry backoff cannot be negative");
+        return args.retryBackoffMs;
+    }
+
+    @Provides
+    @Named("HttpDownloader.verifyChecksums")
+    public boolean provideVerifyChecksums() {
+        return args.verifyChecksums;
+    }
+
+    @Provides
+    @Singleton
+    public DownloadLimiter provideDownloadLimiter() {
+        AssertArgs.assertFor(args) //
+                .that(a -> a.maxDownloads > 0, "maximum number of downloads must be positive") //
+                .that(a -> a.maxDownloadRate >= 0, "maximum download rate cannot be negative");
+        // only the instance of the server is exposed, other instances would replace its gauges
+        var limiter = new DownloadLimiter(args.maxDownloads, args.maxDownloadRate);
+        limiter.registerMetrics(Metrics.DEFAULT);
+        return limiter;
+    }
+
+    @Provides
+    @Singleton
+    public IndexFileReader provideIndexFileReader() {
+        return args.nativeReader ? new NativeIndexFileReader() : new IndexFileReader();
+    }
+
+    @Provides
+    @Singleton
+    public BoundedCache<Integer, CompactArtifactSet> provideArtifactCache() {
+        AssertArgs.assertFor(args) //
+                .that(a -> a.cacheSizeMb > 0, "cache size must be positive") //
+                .notNull(a -> a.cacheEviction, "cache eviction policy cannot be null") //
+                .that(a -> a.cacheTtlMin > 0, "cache ttl must be positive");
+        var maxBytes = args.cacheSizeMb * 1024 * 1024;
+        var cache = new BoundedCache<Integer, CompactArtifactSet>(maxBytes, CompactArtifactSet::estimateSize, args.cacheEviction, args.cacheTtlMin, TimeUnit.MINUTES);
+        cache.registerMetrics(Metrics.DEFAULT, "artifacts");
+        return cache;
+    }
+
+    @Provides
+    @Singleton
+    public BoundedCache<String, ResponseCache.EncodedResponse> provideResponseCache() {
+        AssertArgs.assertFor(args) //
+                .that(a -> a.responseCacheSizeMb > 0, "response cache size must be positive") //
+                .notNull(a -> a.cacheEviction, "cache eviction policy cannot be null") //
+                .that(a -> a.cacheTtlMin > 0, "cache ttl must be positive");
+        var maxBytes = args.responseCacheSizeMb * 1024 * 1024;
+        var cache = new BoundedCache<String, ResponseCache.EncodedResponse>(maxBytes, ResponseCache.EncodedResponse::estimateSize, args.cacheEviction,
+                args.cacheTtlMin, TimeUnit.MINUTES);
+        cache.registerMetrics(Metrics.DEFAULT, "responses");
+        return cache;
+    }
+
+    @Provides
+    @Named("IndexService.threads")
+    public int provideThreads() {
+        AssertArgs.assertFor(args) //
+                .that(a -> a.threads > 0, "number of threads must be positive");
+        return args.threads;
+    }
+
+    @Provides
+    @Singleton
+    @Named("IndexService.batchPool")
+    public ExecutorService provideBatchPool(@Named("IndexService.threads") int threads) {
+        var counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            var t = new Thread(r, "batch-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Provides
+    @Named("IndexService.timeout")
+    public long provideRequestTimeout() {
+        AssertArgs.assertFor(args) //
+                .that(a -> a.requestTimeoutSec >= 0, "request timeout cannot be negative");
+        return args.requestTimeoutSec;
+    }
+
+    @Provides
+    @Singleton
+    @Named("AsyncLoads.executor")
+    public ExecutorService provideLoadExecutor() {
+        if (args.virtualThreads) {
+            var executor = newVirtualThreadPerTaskExecutor();
+            AssertArgs.assertFor(args) //
+                    .that(a -> executor != null, "virtual threads require Java 21 or newer");
+            return executor;
+        }
+        AssertArgs.assertFor(args) //
+                .that(a -> a.loadThreads > 0, "number of load threads must be positive");
+        var counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(args.loadThreads, r -> {
+            var t = new Thread(r, "load-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** The project targets Java 11, so the factory is looked up at runtime. */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    @Provides
+    @Named("Prefetcher.interval")
+    public long providePrefetchInterval() {
+        AssertArgs.assertFor(args) //
+                .that(a -> a.prefetchIntervalMin >= 0, "prefetch interval cannot be negative");
+        return args.prefetchIntervalMin;
+    }
+
+    @Provides
+    @Named("Prefetcher.depth")
+    public int providePrefetchDepth() {
+        AssertArgs.assertFor(args) //
+                .that(a -> a.prefetchDepth > 0, "prefetch depth must be positive");
+        return args.prefetchDepth;
+    }
 }
\ No newline at end of file
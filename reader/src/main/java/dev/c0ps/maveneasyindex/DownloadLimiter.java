@@ -0,0 +1,215 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounds the load on the upstream repository. Downloads wait in a queue until
+ * one of the limited slots becomes free, interactive downloads are served
+ * before bulk downloads (e.g., range requests or prefetching) and downloads of
+ * the same priority in the order of their arrival. Optionally, the combined
+ * bandwidth of all downloads is throttled.
+ */
+public class DownloadLimiter {
+
+    public enum Priority {
+        INTERACTIVE, BULK
+    }
+
+    /** unused bandwidth can only be saved up for a short burst */
+    private static final long BURST_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final String QUEUE_WAIT = "maven_easy_index_download_queue_wait_seconds";
+
+    private final int maxConcurrent;
+    private final long maxBytesPerSec;
+
+    private final Map<Priority, Deque<Ticket>> queues = new EnumMap<>(Priority.class);
+    private int active;
+
+    private final Object throttleLock = new Object();
+    private long nextFreeNanos = System.nanoTime();
+
+    private volatile Map<Priority, Metrics.Histogram> queueWaits = Map.of();
+
+    /** At most 4 concurrent downloads, no bandwidth limit. */
+    public DownloadLimiter() {
+        this(4, 0);
+    }
+
+    public DownloadLimiter(int maxConcurrent, long maxBytesPerSec) {
+        this.maxConcurrent = maxConcurrent;
+        this.maxBytesPerSec = maxBytesPerSec;
+        for (var p : Priority.values()) {
+            queues.put(p, new ArrayDeque<>());
+        }
+    }
+
+    /** Exposes the queue of this limiter in the registry, gauges of an earlier registration are replaced. */
+    public void registerMetrics(Metrics metrics) {
+        var waits = new EnumMap<Priority, Metrics.Histogram>(Priority.class);
+        for (var p : Priority.values()) {
+            metrics.gauge("maven_easy_index_download_queue_depth", "Number of downloads waiting for a free slot", () -> getQueueDepth(p), "priority", name(p));
+            waits.put(p, metrics.histogram(QUEUE_WAIT, "Time downloads waited for a free slot", Metrics.DURATION_BUCKETS, "priority", name(p)));
+        }
+        metrics.gauge("maven_easy_index_downloads_active", "Number of running downloads", this::getActive);
+        queueWaits = waits;
+    }
+
+    /** Queues a download, which can start once {@link Ticket#await()} returns. */
+    public synchronized Ticket enqueue(Priority priority) {
+        var t = new Ticket(priority);
+        queues.get(priority).add(t);
+        return t;
+    }
+
+    public Ticket acquire(Priority priority) throws InterruptedIOException {
+        var t = enqueue(priority);
+        t.await();
+        return t;
+    }
+
+    public synchronized int getQueueDepth(Priority priority) {
+        return queues.get(priority).size();
+    }
+
+    public synchronized int getActive() {
+        return active;
+    }
+
+    /** Blocks as long as necessary to keep all downloads below the bandwidth limit. */
+    public void throttle(long bytes) throws InterruptedIOException {
+        if (maxBytesPerSec <= 0) {
+            return;
+        }
+        long waitNanos;
+        synchronized (throttleLock) {
+            var now = System.nanoTime();
+            if (nextFreeNanos - (now - BURST_NANOS) < 0) {
+                nextFreeNanos = now - BURST_NANOS;
+            }
+            nextFreeNanos += bytes * 1_000_000_000L / maxBytesPerSec;
+            waitNanos = nextFreeNanos - now;
+        }
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while throttling download");
+            }
+        }
+    }
+
+    /** Grants the ticket if a slot is free and no other download is ahead of it. */
+    private boolean tryGrant(Ticket t) {
+        if (active >= maxConcurrent) {
+            return false;
+        }
+        for (var p : Priority.values()) {
+            var head = queues.get(p).peek();
+            if (head != null) {
+                if (head != t) {
+                    return false;
+                }
+                queues.get(p).poll();
+                active++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String name(Priority p) {
+        return p.name().toLowerCase();
+    }
+
+    public class Ticket implements AutoCloseable {
+
+        private final long enqueuedNanos = System.nanoTime();
+        private Priority priority;
+        private boolean isGranted;
+        private boolean isClosed;
+
+        private Ticket(Priority priority) {
+            this.priority = priority;
+        }
+
+        public void await() throws InterruptedIOException {
+            Priority waitedAs;
+            synchronized (DownloadLimiter.this) {
+                try {
+                    while (!isGranted) {
+                        if (isClosed) {
+                            throw new IllegalStateException("Ticket has already been closed");
+                        }
+                        isGranted = tryGrant(this);
+                        if (!isGranted) {
+                            DownloadLimiter.this.wait();
+                        }
+                    }
+                    // another slot might still be free for the next in line
+                    DownloadLimiter.this.notifyAll();
+                } catch (InterruptedException e) {
+                    close();
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for a download slot");
+                }
+                waitedAs = priority;
+            }
+            var queueWait = queueWaits.get(waitedAs);
+            if (queueWait != null) {
+                queueWait.observeSince(enqueuedNanos);
+            }
+        }
+
+        /** Moves a waiting bulk download to the interactive queue, e.g., when an interactive request needs it. */
+        public void promote() {
+            synchronized (DownloadLimiter.this) {
+                if (isGranted || isClosed || priority == Priority.INTERACTIVE) {
+                    return;
+                }
+                queues.get(priority).remove(this);
+                priority = Priority.INTERACTIVE;
+                queues.get(priority).add(this);
+                DownloadLimiter.this.notifyAll();
+            }
+        }
+
+        /** Frees the slot, or leaves the queue if the download has not started yet. */
+        @Override
+        public void close() {
+            synchronized (DownloadLimiter.this) {
+                if (isClosed) {
+                    return;
+                }
+                isClosed = true;
+                if (isGranted) {
+                    active--;
+                } else {
+                    queues.get(priority).remove(this);
+                }
+                DownloadLimiter.this.notifyAll();
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,339 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dev.c0ps.maveneasyindex.DownloadLimiter.Priority;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+
+/**
+ * Ingests the full (non-incremental) index into full/ inside the base folder.
+ * The decoded artifacts are never collected in memory, they are appended to
+ * one spill file per partition (by groupId and artifactId) while the index is
+ * read. Afterwards, every partition is de-duplicated on its own and converted
+ * into a {@link ReleaseBatch}, so memory is bounded by the largest partition.
+ * The result is served in pages of (partition, row) positions.
+ */
+@Singleton
+public class FullIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FullIndex.class);
+
+    private static final String INDEX_FILE = "nexus-maven-repository-index.gz";
+    private static final String COMPLETE_FILE = "complete";
+    private static final int SPILL_BUFFER = 16 * 1024;
+
+    public enum State {
+        MISSING, RUNNING, COMPLETE, FAILED
+    }
+
+    private final File dir;
+    private final boolean isEnabled;
+    private final String url;
+    private final int numPartitions;
+    private final HttpDownloader downloader;
+    private final DownloadLimiter limiter;
+    private final IndexFileReader reader;
+
+    private volatile State state = State.MISSING;
+    private volatile long numArtifacts;
+    private volatile ReleaseBatch[] partitions;
+
+    @Inject
+    public FullIndex(@Named("RepositoryUtils.baseFolder") String baseFolder, @Named("FullIndex.enabled") boolean isEnabled, @Named("FullIndex.url") String url,
+            @Named("FullIndex.partitions") int numPartitions, HttpDownloader downloader, DownloadLimiter limiter, IndexFileReader reader) {
+        this.dir = new File(baseFolder, "full");
+        this.isEnabled = isEnabled;
+        this.url = url;
+        this.numPartitions = numPartitions;
+        this.downloader = downloader;
+        this.limiter = limiter;
+        this.reader = reader;
+        open();
+    }
+
+    private void open() {
+        if (!new File(dir, COMPLETE_FILE).exists()) {
+            return;
+        }
+        try {
+            var batches = new ReleaseBatch[Integer.parseInt(Files.readString(new File(dir, COMPLETE_FILE).toPath()).trim())];
+            var count = 0L;
+            for (var i = 0; i < batches.length; i++) {
+                batches[i] = ReleaseBatch.open(partitionFile(i));
+                count += batches[i].getRowCount();
+            }
+            partitions = batches;
+            numArtifacts = count;
+            state = State.COMPLETE;
+            LOG.info("Opened full index with {} artifacts in {} partitions", count, batches.length);
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Cannot open full index, it has to be ingested again", e);
+        }
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public long getNumArtifacts() {
+        return numArtifacts;
+    }
+
+    /** Starts the ingestion in the background, unless it is disabled, already running, or complete. */
+    public synchronized void start() {
+        if (!isEnabled || state == State.RUNNING || state == State.COMPLETE) {
+            return;
+        }
+        state = State.RUNNING;
+        var t = new Thread(this::ingest, "full-index");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /** Downloads and ingests the full index, which replaces earlier incomplete attempts. */
+    public synchronized void ingest() {
+        state = State.RUNNING;
+        try {
+            dir.mkdirs();
+            var indexFile = download();
+            clearPartitions();
+            var spills = new File[numPartitions];
+            for (var i = 0; i < numPartitions; i++) {
+                spills[i] = new File(dir, String.format("part-%04d.spill", i));
+            }
+            var numSpilled = spill(indexFile, spills);
+            LOG.info("Spilled {} artifacts of the full index into {} partitions", numSpilled, numPartitions);
+
+            var batches = new ReleaseBatch[numPartitions];
+            var count = 0L;
+            for (var i = 0; i < numPartitions; i++) {
+                batches[i] = ReleaseBatch.write(partitionFile(i), i, readSpill(spills[i]));
+                count += batches[i].getRowCount();
+                Files.delete(spills[i].toPath());
+            }
+            writeAtomically(new File(dir, COMPLETE_FILE), Integer.toString(numPartitions));
+
+            partitions = batches;
+            numArtifacts = count;
+            state = State.COMPLETE;
+            LOG.info("Ingested full index with {} unique artifacts", count);
+        } catch (IOException | RuntimeException e) {
+            state = State.FAILED;
+            LOG.error("Cannot ingest full index from {}", url, e);
+        }
+    }
+
+    private File download() throws IOException {
+        var to = new File(dir, INDEX_FILE);
+        if (to.exists()) {
+            return to;
+        }
+        var part = new File(dir, INDEX_FILE + ".part");
+        LOG.info("Downloading full index from {} ...", url);
+        try (var ticket = limiter.enqueue(Priority.BULK)) {
+            ticket.await();
+            downloader.download(new URL(url), part, limiter::throttle);
+        }
+        Files.move(part.toPath(), to.toPath(), ATOMIC_MOVE);
+        return to;
+    }
+
+    private void clearPartitions() throws IOException {
+        Files.deleteIfExists(new File(dir, COMPLETE_FILE).toPath());
+        var names = dir.list();
+        for (var name : names == null ? new String[0] : names) {
+            if (name.startsWith("part-")) {
+                Files.delete(new File(dir, name).toPath());
+            }
+        }
+    }
+
+    /** Appends every decoded artifact to the spill file of its partition. */
+    private long spill(File indexFile, File[] spills) throws IOException {
+        var outs = new DataOutputStream[spills.length];
+        var count = new long[1];
+        try {
+            for (var i = 0; i < spills.length; i++) {
+                outs[i] = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spills[i]), SPILL_BUFFER));
+            }
+            // artifacts are not kept, a string pool would grow with the size of the full index
+            reader.readIndexFile(indexFile, ArtifactFilter.NONE, false, a -> {
+                try {
+                    var out = outs[partitionOf(a, spills.length)];
+                    out.writeUTF(a.groupId);
+                    out.writeUTF(a.artifactId);
+                    out.writeUTF(a.version);
+                    out.writeUTF(a.packaging);
+                    out.writeLong(a.releaseDate);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (++count[0] % 1_000_000 == 0) {
+                    LOG.info("Spilled {} artifacts of the full index ...", count[0]);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            for (var out : outs) {
+                if (out != null) {
+                    out.close();
+                }
+            }
+        }
+        return count[0];
+    }
+
+    private static HashSet<Artifact> readSpill(File spill) throws IOException {
+        var artifacts = new HashSet<Artifact>();
+        try (var in = new DataInputStream(new BufferedInputStream(new FileInputStream(spill)))) {
+            while (true) {
+                String groupId;
+                try {
+                    groupId = in.readUTF();
+                } catch (EOFException e) {
+                    return artifacts;
+                }
+                var a = new Artifact(groupId, in.readUTF(), in.readUTF(), in.readUTF());
+                a.releaseDate = in.readLong();
+                artifacts.add(a);
+            }
+        }
+    }
+
+    /** Versions of the same artifact end up in the same partition. */
+    static int partitionOf(Artifact a, int numPartitions) {
+        var h = 31 * a.groupId.hashCode() + a.artifactId.hashCode();
+        return Math.floorMod(h, numPartitions);
+    }
+
+    private File partitionFile(int partition) {
+        return new File(dir, String.format("part-%04d.col", partition));
+    }
+
+    private static void writeAtomically(File f, String content) throws IOException {
+        var part = File.createTempFile(f.getName() + ".", ".part", f.getParentFile());
+        try {
+            Files.writeString(part.toPath(), content);
+            Files.move(part.toPath(), f.toPath(), ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(part.toPath());
+        }
+    }
+
+    /**
+     * Returns the start of the page that follows a page of <code>limit</code>
+     * artifacts, or null if no artifacts follow. Only row counts are needed.
+     */
+    public Page next(Page start, int limit) {
+        var batches = getPartitions();
+        var partition = start.partition;
+        var row = start.row;
+        long remaining = limit;
+        while (partition < batches.length) {
+            var available = Math.max(0, batches[partition].getRowCount() - row);
+            if (remaining < available) {
+                return new Page(partition, row + (int) remaining);
+            }
+            remaining -= available;
+            partition++;
+            row = 0;
+        }
+        return null;
+    }
+
+    /** Passes all artifacts from the start (inclusive) to the end (exclusive, or null for all) to the consumer. */
+    public void read(Page start, Page end, Consumer<Artifact> consumer) {
+        var batches = getPartitions();
+        for (var partition = start.partition; partition < batches.length; partition++) {
+            if (end != null && partition > end.partition) {
+                return;
+            }
+            var b = batches[partition];
+            var from = partition == start.partition ? start.row : 0;
+            var to = end != null && partition == end.partition ? Math.min(end.row, b.getRowCount()) : b.getRowCount();
+            var strings = b.newStringCache();
+            for (var row = from; row < to; row++) {
+                consumer.accept(b.getArtifact(row, strings));
+            }
+        }
+    }
+
+    private ReleaseBatch[] getPartitions() {
+        var batches = partitions;
+        if (batches == null) {
+            throw new IllegalStateException("Full index has not been ingested yet");
+        }
+        return batches;
+    }
+
+    /** Start of a page (partition and row), which can be passed to clients as an opaque token. */
+    public static class Page {
+
+        public static final Page FIRST = new Page(0, 0);
+
+        private final int partition;
+        private final int row;
+
+        private Page(int partition, int row) {
+            this.partition = partition;
+            this.row = row;
+        }
+
+        public static Page parse(String token) {
+            var parts = token.split("\\.");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid page: " + token);
+            }
+            try {
+                var p = new Page(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+                if (p.partition < 0 || p.row < 0) {
+                    throw new IllegalArgumentException("Invalid page: " + token);
+                }
+                return p;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid page: " + token, e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return partition + "." + row;
+        }
+    }
+}
\ No newline at end of file
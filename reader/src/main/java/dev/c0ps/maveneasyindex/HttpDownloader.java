@@ -0,0 +1,328 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+
+/**
+ * Downloads files through a shared {@link HttpClient}, which keeps connections
+ * alive and prefers HTTP/2. Partial downloads are resumed with range requests,
+ * failed attempts are retried with exponential backoff, and complete files are
+ * verified against the published <code>.sha1</code> (or <code>.md5</code>)
+ * checksum. URLs of other schemes (e.g., <code>file:</code>) are copied as-is.
+ */
+@Singleton
+public class HttpDownloader {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HttpDownloader.class);
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-\\d+/(\\d+|\\*)");
+    private static final Pattern UNSATISFIED_RANGE = Pattern.compile("bytes \\*/(\\d+)");
+    private static final Pattern HEX = Pattern.compile("[0-9a-fA-F]+");
+
+    private static final Metrics.Counter DOWNLOAD_BYTES = Metrics.DEFAULT.counter("maven_easy_index_download_bytes_total", "Bytes of downloaded index files");
+    private static final Metrics.Counter RETRIES = Metrics.DEFAULT.counter("maven_easy_index_download_retries_total", "Retried attempts to download an index file");
+    private static final Metrics.Counter RESUMES = Metrics.DEFAULT.counter("maven_easy_index_download_resumes_total", "Downloads that continued a partial file");
+
+    private final HttpClient client = HttpClient.newBuilder() //
+            .version(HttpClient.Version.HTTP_2) //
+            .followRedirects(HttpClient.Redirect.NORMAL) //
+            .connectTimeout(TIMEOUT) //
+            .build();
+
+    private final int retries;
+    private final long backoffMs;
+    private final boolean verifyChecksums;
+
+    /** Retries twice, but does not verify checksums. */
+    public HttpDownloader() {
+        this(2, 1000, false);
+    }
+
+    @Inject
+    public HttpDownloader(@Named("HttpDownloader.retries") int retries, @Named("HttpDownloader.backoff") long backoffMs,
+            @Named("HttpDownloader.verifyChecksums") boolean verifyChecksums) {
+        this.retries = retries;
+        this.backoffMs = backoffMs;
+        this.verifyChecksums = verifyChecksums;
+    }
+
+    /**
+     * Sends a <code>HEAD</code> request and returns whether the file exists (2xx)
+     * or not (404 or 410). Other status codes are reported as exceptions.
+     */
+    public boolean exists(URL url) throws IOException {
+        if (!isHttp(url)) {
+            // e.g., file: URLs, opening the stream is cheap and fails for missing files
+            try {
+                url.openStream().close();
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+        var req = request(url).method("HEAD", HttpRequest.BodyPublishers.noBody()).build();
+        var status = send(req, BodyHandlers.discarding()).statusCode();
+        LOG.info("HEAD {} returned {}", url, status);
+        if (status == 404 || status == 410) {
+            return false;
+        }
+        if (status / 100 != 2) {
+            throw new IOException(String.format("Unexpected status %d for %s", status, url));
+        }
+        return true;
+    }
+
+    /**
+     * Downloads the URL into the given file. An existing file is considered to be
+     * the beginning of an earlier, interrupted download and is resumed. The file
+     * is kept when all attempts fail, so a later call can resume, but it is
+     * deleted when it turns out to be corrupt or the URL does not exist.
+     */
+    public void download(URL url, File to) throws IOException {
+        download(url, to, Throttle.NONE);
+    }
+
+    /** Like {@link #download(URL, File)}, but reports every received chunk to the throttle before it continues. */
+    public void download(URL url, File to, Throttle throttle) throws IOException {
+        if (!isHttp(url)) {
+            try (var in = url.openStream()) {
+                DOWNLOAD_BYTES.inc(Files.copy(in, to.toPath(), StandardCopyOption.REPLACE_EXISTING));
+            }
+            return;
+        }
+        var isDownloaded = false;
+        for (var attempt = 0;; attempt++) {
+            try {
+                // a failed verification only repeats the download if the file was corrupt
+                if (!isDownloaded) {
+                    downloadOnce(url, to, throttle);
+                    isDownloaded = true;
+                }
+                if (verifyChecksums) {
+                    verify(url, to);
+                }
+                return;
+            } catch (FileNotFoundException e) {
+                Files.deleteIfExists(to.toPath());
+                throw e;
+            } catch (IOException e) {
+                if (e instanceof InterruptedIOException || attempt >= retries) {
+                    throw e;
+                }
+                isDownloaded = isDownloaded && to.exists();
+                var delayMs = backoffMs << Math.min(attempt, 16);
+                LOG.warn("Download of {} failed ({}), retrying in {} ms ...", url, e.getMessage(), delayMs);
+                RETRIES.inc();
+                sleep(delayMs);
+            }
+        }
+    }
+
+    private void downloadOnce(URL url, File to, Throttle throttle) throws IOException {
+        var offset = to.length();
+        var req = request(url);
+        if (offset > 0) {
+            req.header("Range", "bytes=" + offset + "-");
+        }
+        var res = send(req.GET().build(), BodyHandlers.ofInputStream());
+        try (var in = res.body()) {
+            var status = res.statusCode();
+            if (status == 404 || status == 410) {
+                throw new FileNotFoundException(String.format("Status %d for %s", status, url));
+            }
+            if (status == 416 && offset > 0 && unsatisfiedLength(res) == offset) {
+                // complete before, e.g., the process stopped before the file was moved
+                LOG.info("Download of {} is already complete", url);
+                return;
+            }
+            if (status == 416 || (status == 206 && (offset == 0 || rangeStart(res) != offset))) {
+                // the partial file cannot be continued, start over with the next attempt
+                Files.deleteIfExists(to.toPath());
+                throw new IOException(String.format("Cannot resume download of %s at byte %d", url, offset));
+            }
+            if (status == 206) {
+                LOG.info("Resuming download of {} at byte {}", url, offset);
+                RESUMES.inc();
+                copy(in, to, true, throttle);
+            } else if (status / 100 == 2) {
+                // servers that ignore the range send the complete file
+                copy(in, to, false, throttle);
+            } else {
+                throw new IOException(String.format("Unexpected status %d for %s", status, url));
+            }
+        }
+    }
+
+    private static long rangeStart(HttpResponse<?> res) {
+        var range = res.headers().firstValue("Content-Range").orElse("");
+        var m = CONTENT_RANGE.matcher(range);
+        return m.matches() ? Long.parseLong(m.group(1)) : -1;
+    }
+
+    /** @return the total length of a 416 response, or -1 if it is not reported */
+    private static long unsatisfiedLength(HttpResponse<?> res) {
+        var range = res.headers().firstValue("Content-Range").orElse("");
+        var m = UNSATISFIED_RANGE.matcher(range);
+        return m.matches() ? Long.parseLong(m.group(1)) : -1;
+    }
+
+    private static void copy(InputStream in, File to, boolean append, Throttle throttle) throws IOException {
+        var options = append ? new OpenOption[] { CREATE, WRITE, APPEND } : new OpenOption[] { CREATE, WRITE, TRUNCATE_EXISTING };
+        try (var out = Files.newOutputStream(to.toPath(), options)) {
+            var buf = new byte[64 * 1024];
+            int len;
+            while ((len = in.read(buf)) != -1) {
+                out.write(buf, 0, len);
+                DOWNLOAD_BYTES.inc(len);
+                throttle.consume(len);
+            }
+        }
+    }
+
+    /**
+     * Compares the file with its published checksum. Files without a checksum
+     * are accepted, files with a wrong checksum are deleted.
+     */
+    private void verify(URL url, File file) throws IOException {
+        for (var algorithm : new String[] { "SHA-1", "MD5" }) {
+            var suffix = algorithm.equals("SHA-1") ? ".sha1" : ".md5";
+            var expected = fetchChecksum(new URL(url + suffix));
+            if (expected == null) {
+                continue;
+            }
+            var actual = digest(file, algorithm);
+            if (!actual.equalsIgnoreCase(expected)) {
+                Files.deleteIfExists(file.toPath());
+                throw new IOException(String.format("%s checksum mismatch for %s (expected %s, was %s)", algorithm, url, expected, actual));
+            }
+            LOG.info("Verified {} checksum of {}", algorithm, url);
+            return;
+        }
+        LOG.info("No checksum has been published for {}, skipping verification", url);
+    }
+
+    /**
+     * Returns the hex digest from a checksum file, which might be followed by a
+     * file name, or null if none has been published (404 or 410). Other status
+     * codes are reported as exceptions, so the verification is retried.
+     */
+    private String fetchChecksum(URL url) throws IOException {
+        var res = send(request(url).GET().build(), BodyHandlers.ofString(UTF_8));
+        var status = res.statusCode();
+        if (status == 404 || status == 410) {
+            return null;
+        }
+        if (status / 100 != 2) {
+            throw new IOException(String.format("Unexpected status %d for %s", status, url));
+        }
+        var body = res.body().trim();
+        var checksum = body.isEmpty() ? "" : body.split("\\s+")[0];
+        if (!HEX.matcher(checksum).matches() || (checksum.length() != 40 && checksum.length() != 32)) {
+            LOG.warn("Ignoring malformed checksum file {}", url);
+            return null;
+        }
+        return checksum;
+    }
+
+    private static String digest(File file, String algorithm) throws IOException {
+        try (var in = new FileInputStream(file)) {
+            var md = MessageDigest.getInstance(algorithm);
+            var buf = new byte[64 * 1024];
+            int len;
+            while ((len = in.read(buf)) != -1) {
+                md.update(buf, 0, len);
+            }
+            var sb = new StringBuilder();
+            for (var b : md.digest()) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static HttpRequest.Builder request(URL url) throws IOException {
+        try {
+            return HttpRequest.newBuilder(url.toURI()).timeout(TIMEOUT);
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid URL " + url, e);
+        }
+    }
+
+    private <T> HttpResponse<T> send(HttpRequest req, BodyHandler<T> handler) throws IOException {
+        try {
+            return client.send(req, handler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while requesting " + req.uri());
+        }
+    }
+
+    private static void sleep(long ms) throws InterruptedIOException {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry");
+        }
+    }
+
+    public interface Throttle {
+
+        Throttle NONE = bytes -> {};
+
+        void consume(long bytes) throws InterruptedIOException;
+    }
+
+    private static boolean isHttp(URL url) {
+        return "http".equalsIgnoreCase(url.getProtocol()) || "https".equalsIgnoreCase(url.getProtocol());
+    }
+}
\ No newline at end of file
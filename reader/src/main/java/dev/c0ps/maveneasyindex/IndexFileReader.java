@@ -29,6 +29,7 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.IndexableField;
@@ -47,35 +48,87 @@ public class IndexFileReader {
 
     private static final Logger LOG = LoggerFactory.getLogger(IndexFileReader.class);
 
+    private static final Metrics.Counter DOCUMENTS = Metrics.DEFAULT.counter("maven_easy_index_documents_visited_total", "Documents visited in index files");
+    private static final Metrics.Counter ARTIFACTS = Metrics.DEFAULT.counter("maven_easy_index_artifacts_kept_total", "Artifacts that have been kept from the visited documents");
+    private static final Metrics.Histogram PARSE_DURATION = Metrics.DEFAULT.histogram("maven_easy_index_parse_duration_seconds", "Duration of reading an index file",
+            Metrics.DURATION_BUCKETS);
+
     public Set<Artifact> readIndexFile(File f) {
+        var artifacts = new HashSet<Artifact>();
+        readIndexFile(f, artifacts::add);
+        return artifacts;
+    }
+
+    /**
+     * Passes every valid artifact to the consumer as soon as it has been decoded,
+     * without collecting them. Artifacts that are listed multiple times in the
+     * index file are passed multiple times.
+     */
+    public void readIndexFile(File f, Consumer<Artifact> consumer) {
+        readIndexFile(f, ArtifactFilter.NONE, consumer);
+    }
+
+    /**
+     * Like {@link #readIndexFile(File, Consumer)}, but documents that do not
+     * match the filter are skipped before an artifact is created for them.
+     */
+    public void readIndexFile(File f, ArtifactFilter filter, Consumer<Artifact> consumer) {
+        readIndexFile(f, filter, true, consumer);
+    }
+
+    /**
+     * Like {@link #readIndexFile(File, ArtifactFilter, Consumer)}, but strings are
+     * only shared through a {@link StringPool} if requested. The pool keeps every
+     * distinct coordinate of the file until the read is finished, which does not
+     * pay off for consumers that do not keep the artifacts.
+     */
+    public void readIndexFile(File f, ArtifactFilter filter, boolean isPooled, Consumer<Artifact> consumer) {
+        var start = System.nanoTime();
+        // counted locally and published once, to keep the hot path free of contention
+        var counts = new long[2];
+        try {
+            readDocuments(f, filter, isPooled ? new StringPool() : null, consumer, counts);
+            PARSE_DURATION.observeSince(start);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            DOCUMENTS.inc(counts[0]);
+            ARTIFACTS.inc(counts[1]);
+        }
+    }
 
+    /**
+     * Passes all valid and matching artifacts of the index file to the consumer,
+     * their strings are shared through the pool (if provided). The number of
+     * visited documents is counted in counts[0], the number of passed artifacts
+     * in counts[1].
+     */
+    protected void readDocuments(File f, ArtifactFilter filter, StringPool pool, Consumer<Artifact> consumer, long[] counts) throws IOException {
         try ( //
                 var fis = new FileInputStream(f); //
                 var bis = new BufferedInputStream(fis)) {
 
             var reader = new IndexDataReader(bis);
-            var context = setupPlexusContext();
-            var artifacts = new HashSet<Artifact>();
+            var context = indexingContext();
+            var isUnfiltered = filter.isEmpty();
 
             reader.readIndex(new IndexDataReader.IndexDataReadVisitor() {
                 @Override
                 public void visitDocument(Document doc) {
-                    if (isValidPackage(doc)) {
-                        var artifact = toArtifact(doc);
+                    counts[0]++;
+                    if (isValidPackage(doc) && (isUnfiltered || filter.matches(doc))) {
+                        var artifact = toArtifact(doc, pool);
                         if (artifact != null) {
-                            artifacts.add(artifact);
+                            counts[1]++;
+                            consumer.accept(artifact);
                         }
                     }
                 }
             }, context);
-
-            return artifacts;
-        } catch (IOException e) {
-            throw new RuntimeException(e);
         }
     }
 
-    private static boolean isValidPackage(Document doc) {
+    static boolean isValidPackage(Document doc) {
         for (var fieldName : Set.of("l", "del", "DESCRIPTOR", "allGroups", "rootGroups")) {
             var value = doc.getField(fieldName);
             if (value != null) {
@@ -85,7 +138,28 @@ public class IndexFileReader {
         return true;
     }
 
-    private IndexingContext setupPlexusContext() {
+    /**
+     * Eagerly creates the shared Plexus context, which would otherwise happen
+     * lazily on the first read.
+     */
+    public void warmUp() {
+        LOG.info("Warming up Plexus context ...");
+        indexingContext();
+    }
+
+    static IndexingContext indexingContext() {
+        return PlexusContextHolder.CONTEXT;
+    }
+
+    // Setting up the container involves classpath scanning and takes several
+    // hundred ms, so it happens once per JVM. The context only hands out the
+    // (stateless) IndexCreators, so it can be shared across threads.
+    private static class PlexusContextHolder {
+        private static final IndexingContext CONTEXT = setupPlexusContext();
+    }
+
+    private static IndexingContext setupPlexusContext() {
+        var start = System.nanoTime();
         PlexusContainer plexusContainer;
         List<IndexCreator> indexers;
         try {
@@ -108,13 +182,22 @@ public class IndexFileReader {
         }
 
         var context = (IndexingContext) Proxy.newProxyInstance( //
-                getClass().getClassLoader(), //
+                IndexFileReader.class.getClassLoader(), //
                 new Class[] { IndexingContext.class }, //
-                new MyInvocationHandler(indexers));
+                new MyInvocationHandler(List.copyOf(indexers)));
+        LOG.info("Plexus context has been set up in {} ms", (System.nanoTime() - start) / 1000000);
         return context;
     }
 
     public static Artifact toArtifact(Document doc) {
+        return toArtifact(doc, null);
+    }
+
+    /**
+     * Like {@link #toArtifact(Document)}, but all strings of the artifact are
+     * replaced by their shared instance from the pool (if provided).
+     */
+    public static Artifact toArtifact(Document doc, StringPool pool) {
 
         // observations:
         // - qualifier is never set :/
@@ -126,13 +209,19 @@ public class IndexFileReader {
         // - fields can be malformed (extra ':')
         // - parent poms seem to be p=pom, e=pom
 
-        var m = str(doc.getField("m"));
+        return toArtifact(str(doc.getField("g")), str(doc.getField("a")), str(doc.getField("v")), str(doc.getField("e")), str(doc.getField("m")), pool);
+    }
 
+    /**
+     * Creates the artifact from the raw values of the index fields g, a, v, e,
+     * and m, or returns null if they are incomplete or invalid.
+     */
+    static Artifact toArtifact(String groupId, String artifactId, String version, String extension, String m, StringPool pool) {
         var id = new Artifact();
-        id.groupId = str(doc.getField("g"));
-        id.artifactId = str(doc.getField("a"));
-        id.version = str(doc.getField("v"));
-        id.packaging = str(doc.getField("e"));
+        id.groupId = groupId;
+        id.artifactId = artifactId;
+        id.version = version;
+        id.packaging = extension;
 
         if (m == null || id.groupId == null || id.artifactId == null || id.version == null || id.packaging == null) {
             LOG.info("Skipping artifact with missing data ({}:{}:{}:{} @ {})", id.groupId, id.artifactId, id.version, id.packaging, m);
@@ -140,7 +229,7 @@ public class IndexFileReader {
         }
 
         // some package entries are convoluted
-        id.packaging = shorten(id.packaging, ".asc", ".sha256", ".sha512");
+        id.packaging = shortenPackaging(id.packaging);
 
         try {
             id.releaseDate = Long.parseLong(m);
@@ -155,6 +244,13 @@ public class IndexFileReader {
             return null;
         }
 
+        if (pool != null) {
+            id.groupId = pool.intern(id.groupId);
+            id.artifactId = pool.intern(id.artifactId);
+            id.version = pool.intern(id.version);
+            id.packaging = pool.intern(id.packaging);
+        }
+
         return id;
     }
 
@@ -162,6 +258,10 @@ public class IndexFileReader {
         return f == null ? null : f.stringValue();
     }
 
+    static String shortenPackaging(String e) {
+        return shorten(e, ".asc", ".sha256", ".sha512");
+    }
+
     private static String shorten(String s, String... suffixes) {
         for (var suffix : suffixes) {
             if (s.endsWith(suffix)) {
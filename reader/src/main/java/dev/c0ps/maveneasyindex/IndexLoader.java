@@ -0,0 +1,102 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dev.c0ps.maveneasyindex.DownloadLimiter.Priority;
+import jakarta.inject.Inject;
+
+/**
+ * Provides the artifacts of an index through the layers of caching: the
+ * in-memory cache, the artifact store on disk, and finally downloading and
+ * parsing the index file.
+ */
+public class IndexLoader {
+
+    private static final Logger LOG = LoggerFactory.getLogger(IndexLoader.class);
+
+    private final RepositoryUtils r;
+    private final IndexFileReader reader;
+    private final ArtifactStore store;
+    private final BoundedCache<Integer, CompactArtifactSet> cache;
+    private final VersionIndex versions;
+    private final ReleaseStore releases;
+
+    @Inject
+    public IndexLoader(RepositoryUtils r, IndexFileReader reader, ArtifactStore store, BoundedCache<Integer, CompactArtifactSet> cache, VersionIndex versions,
+            ReleaseStore releases) {
+        this.r = r;
+        this.reader = reader;
+        this.store = store;
+        this.cache = cache;
+        this.versions = versions;
+        this.releases = releases;
+    }
+
+    public CompactArtifactSet get(int num) {
+        return get(num, Priority.INTERACTIVE);
+    }
+
+    /** The priority is used when the index file has to be downloaded. */
+    public CompactArtifactSet get(int num, Priority priority) {
+        var artifacts = cache.getOrLoad(num, n -> load(n, priority));
+        LOG.info("Cache stats after request for index #{}: {}", num, cache.stats());
+        return artifacts;
+    }
+
+    /** Returns the artifacts of an index only if they are already in memory. */
+    public CompactArtifactSet getCached(int num) {
+        return cache.get(num);
+    }
+
+    private CompactArtifactSet load(int num, Priority priority) {
+        LOG.info("Memory cache miss for index #{}, reading index file ...", num);
+        var file = r.download(num, priority);
+        var stored = store.read(file);
+        if (stored != null) {
+            var artifacts = CompactArtifactSet.of(stored);
+            addToSecondaryIndices(num, artifacts);
+            return artifacts;
+        }
+        var artifacts = CompactArtifactSet.of(reader.readIndexFile(file));
+        store.write(file, artifacts);
+        addToSecondaryIndices(num, artifacts);
+        return artifacts;
+    }
+
+    private void addToSecondaryIndices(int num, CompactArtifactSet artifacts) {
+        versions.add(num, artifacts);
+        releases.add(num, artifacts);
+    }
+
+    /**
+     * Adds all indices that have been parsed before, but that are still missing
+     * in the version index or release store. Indices without an artifact store
+     * are skipped.
+     */
+    public void indexStoredArtifacts() {
+        for (var num : r.getLocalIndices()) {
+            if (!versions.contains(num) || !releases.contains(num)) {
+                var stored = store.read(r.download(num));
+                if (stored != null) {
+                    addToSecondaryIndices(num, CompactArtifactSet.of(stored));
+                }
+            }
+        }
+    }
+}
\ No newline at end of file
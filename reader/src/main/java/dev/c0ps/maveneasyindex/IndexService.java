@@ -15,41 +15,103 @@
  */
 package dev.c0ps.maveneasyindex;
 
+import static jakarta.ws.rs.core.Response.Status.BAD_REQUEST;
 import static jakarta.ws.rs.core.Response.Status.NOT_FOUND;
+import static jakarta.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import dev.c0ps.commons.ResourceUtils;
+import dev.c0ps.maveneasyindex.DownloadLimiter.Priority;
 import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.DefaultValue;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.ConnectionCallback;
+import jakarta.ws.rs.container.Suspended;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 
 @Path("/")
 public class IndexService {
 
     private static final Logger LOG = LoggerFactory.getLogger(IndexService.class);
 
+    private static final int MAX_BATCH_SIZE = 1000;
+    private static final int DEFAULT_PAGE_SIZE = 10_000;
+    private static final int MAX_PAGE_SIZE = 100_000;
+    private static final String CONTINUATION_TOKEN = "X-Continuation-Token";
+    private static final String TOTAL_COUNT = "X-Total-Count";
+
     private final RepositoryUtils r;
     private final IndexFileReader reader;
+    private final IndexLoader loader;
+    private final ResponseCache responses;
+    private final AsyncLoads loads;
+    private final VersionIndex versions;
+    private final ReleaseStore releases;
+    private final FullIndex full;
+    private final ObjectMapper om;
+    private final ExecutorService batchPool;
+    private final int batchWindow;
+    private final long timeoutSec;
     private final String indexContent;
 
-    private final Map<Integer, Set<Artifact>> cache = new HashMap<>();
-
     @Inject
-    public IndexService(RepositoryUtils r, IndexFileReader reader) {
+    public IndexService(RepositoryUtils r, IndexFileReader reader, IndexLoader loader, ResponseCache responses, AsyncLoads loads, VersionIndex versions, //
+            ReleaseStore releases, FullIndex full, ObjectMapper om, //
+            @Named("IndexService.batchPool") ExecutorService batchPool, @Named("IndexService.threads") int threads, //
+            @Named("IndexService.timeout") long timeoutSec) {
         this.r = r;
         this.reader = reader;
+        this.loader = loader;
+        this.responses = responses;
+        this.loads = loads;
+        this.versions = versions;
+        this.releases = releases;
+        this.full = full;
+        this.om = om;
+        this.batchPool = batchPool;
+        // bounds the number of indices that are loaded ahead of the one being written
+        this.batchWindow = 2 * threads;
+        this.timeoutSec = timeoutSec;
         indexContent = ResourceUtils.readResourceToString("index.html", UTF_8);
     }
 
@@ -59,6 +121,13 @@ public class IndexService {
         return Response.ok(indexContent).build();
     }
 
+    @GET
+    @Path("/metrics")
+    @Produces("text/plain; version=0.0.4; charset=utf-8")
+    public String getMetrics() {
+        return Metrics.DEFAULT.scrape();
+    }
+
     @GET
     @Path("/exists/{num}")
     public Response exists(@PathParam("num") int num) {
@@ -70,22 +139,391 @@ public class IndexService {
 
     @GET
     @Path("/get/{num}")
+    @Produces({ ArtifactFormat.MEDIA_TYPE_JSON, ArtifactFormat.MEDIA_TYPE_NDJSON, ArtifactFormat.MEDIA_TYPE_SMILE, ArtifactFormat.MEDIA_TYPE_BINARY })
+    public void get(@PathParam("num") int num, //
+            @QueryParam("stream") boolean stream, //
+            @QueryParam("dedup") @DefaultValue("true") boolean dedup, //
+            @QueryParam("packaging") List<String> packagings, //
+            @QueryParam("groupPrefix") List<String> groupPrefixes, //
+            @QueryParam("releasedAfter") Long releasedAfter, //
+            @QueryParam("releasedBefore") Long releasedBefore, //
+            @QueryParam("offset") Integer offset, //
+            @QueryParam("limit") Integer limit, //
+            @Context HttpHeaders headers, //
+            @Context Request request, //
+            @Suspended AsyncResponse response) {
+        var format = selectFormat(headers);
+        var filter = new ArtifactFilter(splitValues(packagings), splitValues(groupPrefixes), releasedAfter, releasedBefore);
+        var isGzip = acceptsGzip(headers);
+        LOG.info("Returning artifacts for {} as {} ({}) ...", num, format, filter);
+        if (num < 1) {
+            response.resume(Response.status(NOT_FOUND).build());
+            return;
+        }
+
+        // hits are answered right away, misses wait for their load without blocking a server thread
+        if (offset != null || limit != null) {
+            var from = offset == null ? 0 : offset;
+            var size = limit == null ? DEFAULT_PAGE_SIZE : limit;
+            if (stream || !filter.isEmpty() || from < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+                response.resume(Response.status(BAD_REQUEST).build());
+                return;
+            }
+            var cached = loader.getCached(num);
+            if (cached != null) {
+                response.resume(page(cached, from, size, format));
+                return;
+            }
+            resumeLater(response, "artifacts/" + num, () -> r.exists(num) ? loader.get(num) : null, artifacts -> page(artifacts, from, size, format));
+            return;
+        }
+        if (stream) {
+            var cached = loader.getCached(num);
+            if (cached != null) {
+                LOG.info("Streaming cached artifacts of index #{}", num);
+                response.resume(filtered(cached, format, filter));
+                return;
+            }
+            resumeLater(response, "download/" + num, () -> r.exists(num) ? r.download(num) : null, file -> {
+                LOG.info("Streaming artifacts of index #{} while reading the index file ...", num);
+                return Response.ok(streamIndexFile(file, dedup, format, filter), format.getMediaType()).build();
+            });
+            return;
+        }
+        if (!filter.isEmpty()) {
+            // arbitrary filter combinations are not worth caching, the artifacts are
+            var cached = loader.getCached(num);
+            if (cached != null) {
+                response.resume(filtered(cached, format, filter));
+                return;
+            }
+            resumeLater(response, "artifacts/" + num, () -> r.exists(num) ? loader.get(num) : null, artifacts -> filtered(artifacts, format, filter));
+            return;
+        }
+        if (responses.contains(num, format, isGzip)) {
+            response.resume(encoded(responses.get(num, format, isGzip), format, request));
+            return;
+        }
+        resumeLater(response, "response/" + num + "/" + format + "/" + isGzip, () -> r.exists(num) ? responses.get(num, format, isGzip) : null,
+                res -> encoded(res, format, request));
+    }
+
+    /**
+     * Resumes the response once the (shared) load has finished. Requests that
+     * time out or disconnect stop waiting, the load itself is not interrupted
+     * because other requests might share it. Loads that return null result in a
+     * 404.
+     */
+    private <T> void resumeLater(AsyncResponse response, String key, Supplier<T> load, Function<T, Response> toResponse) {
+        var waiter = loads.submit(key, load);
+        // the result is only handled once the callbacks are registered, the load might finish right away
+        if (timeoutSec > 0) {
+            response.setTimeoutHandler(ar -> {
+                LOG.info("Request for {} timed out", key);
+                waiter.release();
+                ar.resume(Response.status(SERVICE_UNAVAILABLE).build());
+            });
+            response.setTimeout(timeoutSec, TimeUnit.SECONDS);
+        }
+        response.register((ConnectionCallback) ar -> {
+            LOG.info("Client waiting for {} has disconnected", key);
+            waiter.release();
+        });
+        waiter.getResult().whenComplete((res, t) -> {
+            waiter.release();
+            if (t != null) {
+                response.resume(t instanceof CompletionException && t.getCause() != null ? t.getCause() : t);
+            } else if (res == null) {
+                response.resume(Response.status(NOT_FOUND).build());
+            } else {
+                response.resume(toResponse.apply(res));
+            }
+        });
+    }
+
+    /** Writes a page of the sorted artifacts, without encoding the others. */
+    private static Response page(CompactArtifactSet artifacts, int offset, int limit, ArtifactFormat format) {
+        var from = Math.min(offset, artifacts.size());
+        var to = (int) Math.min((long) from + limit, artifacts.size());
+        StreamingOutput page = out -> writeArtifacts(out, format, consumer -> {
+            for (var i = from; i < to; i++) {
+                consumer.accept(artifacts.get(i));
+            }
+        });
+        return Response.ok(page, format.getMediaType()) //
+                .header(TOTAL_COUNT, artifacts.size()) //
+                .build();
+    }
+
+    private static Response filtered(CompactArtifactSet artifacts, ArtifactFormat format, ArtifactFilter filter) {
+        StreamingOutput filtered = out -> writeArtifacts(out, format, consumer -> {
+            for (var a : artifacts) {
+                if (filter.matches(a)) {
+                    consumer.accept(a);
+                }
+            }
+        });
+        return Response.ok(filtered, format.getMediaType()).build();
+    }
+
+    private static Response encoded(ResponseCache.EncodedResponse res, ArtifactFormat format, Request request) {
+        var tag = new EntityTag(res.etag);
+        var notModified = request == null ? null : request.evaluatePreconditions(tag);
+        var builder = notModified != null //
+                ? notModified //
+                : Response.ok(res.bytes, format.getMediaType());
+        if (res.isGzip) {
+            builder.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return builder.tag(tag) //
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT + ", " + HttpHeaders.ACCEPT_ENCODING) //
+                .build();
+    }
+
+    @GET
+    @Path("/versions/{groupId}/{artifactId}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response get(@PathParam("num") int num) {
-        LOG.info("Returning artifacts for {} ...", num);
-        return num > 0 && r.exists(num) //
-                ? Response.ok(getArtifacts(num)).build()
-                : Response.status(NOT_FOUND).build();
+    public Response getVersions(@PathParam("groupId") String groupId, @PathParam("artifactId") String artifactId) {
+        LOG.info("Returning versions of {}:{} ...", groupId, artifactId);
+        var found = versions.lookup(groupId, artifactId);
+        return found.isEmpty() //
+                ? Response.status(NOT_FOUND).build() //
+                : Response.ok(found).build();
+    }
+
+    @GET
+    @Path("/released")
+    @Produces({ ArtifactFormat.MEDIA_TYPE_JSON, ArtifactFormat.MEDIA_TYPE_NDJSON, ArtifactFormat.MEDIA_TYPE_SMILE, ArtifactFormat.MEDIA_TYPE_BINARY })
+    public Response getReleased(@QueryParam("from") Long from, @QueryParam("to") Long to, @Context HttpHeaders headers) {
+        LOG.info("Returning artifacts released between {} and {} ...", from, to);
+        if (from == null || to == null || to < from) {
+            return Response.status(BAD_REQUEST).build();
+        }
+        var format = selectFormat(headers);
+        StreamingOutput released = out -> writeArtifacts(out, format, consumer -> {
+            releases.scan(from, to, (a, idx) -> consumer.accept(a));
+        });
+        return Response.ok(released, format.getMediaType()).build();
+    }
+
+    @GET
+    @Path("/since/{timestamp}")
+    @Produces({ ArtifactFormat.MEDIA_TYPE_JSON, ArtifactFormat.MEDIA_TYPE_NDJSON, ArtifactFormat.MEDIA_TYPE_SMILE, ArtifactFormat.MEDIA_TYPE_BINARY })
+    public Response getSince(@PathParam("timestamp") long timestamp, //
+            @QueryParam("token") String token, //
+            @QueryParam("limit") @DefaultValue("" + DEFAULT_PAGE_SIZE) int limit, //
+            @Context HttpHeaders headers) {
+        LOG.info("Returning up to {} artifacts released after {} (token {}) ...", limit, timestamp, token);
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return Response.status(BAD_REQUEST).build();
+        }
+        ReleaseStore.Position after;
+        ReleaseStore.Position until;
+        try {
+            after = token == null ? ReleaseStore.Position.after(timestamp) : ReleaseStore.Position.parse(token);
+            // the end is fixed before streaming, so the token can be sent as a header
+            until = releases.seek(after, limit);
+        } catch (IllegalArgumentException e) {
+            return Response.status(BAD_REQUEST).build();
+        }
+        var format = selectFormat(headers);
+        StreamingOutput since = out -> writeArtifacts(out, format, consumer -> {
+            releases.scan(after, until, (a, idx) -> consumer.accept(a));
+        });
+        return Response.ok(since, format.getMediaType()) //
+                .header(CONTINUATION_TOKEN, until.toString()) //
+                .build();
+    }
+
+    @GET
+    @Path("/full")
+    @Produces({ ArtifactFormat.MEDIA_TYPE_JSON, ArtifactFormat.MEDIA_TYPE_NDJSON, ArtifactFormat.MEDIA_TYPE_SMILE, ArtifactFormat.MEDIA_TYPE_BINARY })
+    public Response getFull(@QueryParam("token") String token, @QueryParam("limit") @DefaultValue("" + DEFAULT_PAGE_SIZE) int limit, @Context HttpHeaders headers) {
+        LOG.info("Returning up to {} artifacts of the full index (token {}) ...", limit, token);
+        if (full.getState() != FullIndex.State.COMPLETE) {
+            return Response.status(SERVICE_UNAVAILABLE).build();
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return Response.status(BAD_REQUEST).build();
+        }
+        FullIndex.Page start;
+        try {
+            start = token == null ? FullIndex.Page.FIRST : FullIndex.Page.parse(token);
+        } catch (IllegalArgumentException e) {
+            return Response.status(BAD_REQUEST).build();
+        }
+        var next = full.next(start, limit);
+        var format = selectFormat(headers);
+        StreamingOutput page = out -> writeArtifacts(out, format, consumer -> full.read(start, next, consumer));
+        var builder = Response.ok(page, format.getMediaType());
+        if (next != null) {
+            builder.header(CONTINUATION_TOKEN, next.toString());
+        }
+        return builder.build();
+    }
+
+    @GET
+    @Path("/full/status")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Map<String, Object> getFullStatus() {
+        return Map.of("state", full.getState(), "artifacts", full.getNumArtifacts());
+    }
+
+    /** Multi-valued parameters can be repeated or comma-separated. */
+    private static List<String> splitValues(List<String> values) {
+        if (values == null) {
+            return null;
+        }
+        return values.stream() //
+                .flatMap(v -> Arrays.stream(v.split(","))) //
+                .map(String::trim) //
+                .filter(v -> !v.isEmpty()) //
+                .collect(Collectors.toList());
+    }
+
+    private static boolean acceptsGzip(HttpHeaders headers) {
+        var value = headers == null ? null : headers.getHeaderString(HttpHeaders.ACCEPT_ENCODING);
+        if (value == null) {
+            return false;
+        }
+        // an explicit gzip entry takes precedence over the wildcard, regardless of their order
+        Boolean gzip = null;
+        Boolean any = null;
+        for (var part : value.split(",")) {
+            var params = part.split(";");
+            var coding = params[0].trim();
+            if (coding.equalsIgnoreCase("gzip")) {
+                gzip = !hasZeroQuality(params);
+            } else if (coding.equals("*")) {
+                any = !hasZeroQuality(params);
+            }
+        }
+        return gzip != null ? gzip : Boolean.TRUE.equals(any);
+    }
+
+    private static boolean hasZeroQuality(String[] params) {
+        for (var i = 1; i < params.length; i++) {
+            var p = params[i].trim().replace(" ", "");
+            if (p.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(p.substring(2)) == 0;
+                } catch (NumberFormatException e) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Picks the first supported format in the order of preference of the client, JSON by default. */
+    private static ArtifactFormat selectFormat(HttpHeaders headers) {
+        if (headers != null) {
+            for (var acceptable : headers.getAcceptableMediaTypes()) {
+                for (var f : ArtifactFormat.values()) {
+                    if (acceptable.isCompatible(MediaType.valueOf(f.getMediaType()))) {
+                        return f;
+                    }
+                }
+            }
+        }
+        return ArtifactFormat.JSON;
+    }
+
+    @GET
+    @Path("/get/{from: \\d+}-{to: \\d+}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getRange(@PathParam("from") int from, @PathParam("to") int to) {
+        LOG.info("Returning artifacts for range {}-{} ...", from, to);
+        if (from < 1 || to < from || to - from >= MAX_BATCH_SIZE) {
+            return Response.status(BAD_REQUEST).build();
+        }
+        var nums = IntStream.rangeClosed(from, to).boxed().collect(Collectors.toList());
+        return Response.ok(streamBatch(nums)).build();
+    }
+
+    @POST
+    @Path("/get")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getBatch(List<Integer> nums) {
+        LOG.info("Returning artifacts for batch {} ...", nums);
+        if (nums == null || nums.isEmpty() || nums.size() > MAX_BATCH_SIZE || nums.stream().anyMatch(n -> n == null || n < 1)) {
+            return Response.status(BAD_REQUEST).build();
+        }
+        // repeated numbers would result in duplicate keys in the JSON object
+        var unique = nums.stream().distinct().collect(Collectors.toList());
+        return Response.ok(streamBatch(unique)).build();
+    }
+
+    /**
+     * Loads the requested indices in parallel, but writes them in the requested
+     * order as one JSON object that maps index number to artifacts. Indices that
+     * do not exist are left out.
+     */
+    private StreamingOutput streamBatch(List<Integer> nums) {
+        return out -> {
+            var pending = new ArrayDeque<Future<CompactArtifactSet>>();
+            var toSubmit = nums.iterator();
+            try (var gen = om.getFactory().createGenerator(out)) {
+                gen.writeStartObject();
+                for (var num : nums) {
+                    while (pending.size() < batchWindow && toSubmit.hasNext()) {
+                        var next = toSubmit.next();
+                        pending.add(batchPool.submit(() -> r.exists(next) ? loader.get(next, Priority.BULK) : null));
+                    }
+                    var artifacts = await(pending.poll());
+                    if (artifacts != null) {
+                        gen.writeArrayFieldStart(Integer.toString(num));
+                        for (var a : artifacts) {
+                            gen.writeObject(a);
+                        }
+                        gen.writeEndArray();
+                        gen.flush();
+                    }
+                }
+                gen.writeEndObject();
+            } finally {
+                // loads that have started are shared with other requests and must not be interrupted
+                pending.forEach(f -> f.cancel(false));
+            }
+        };
+    }
+
+    private static <T> T await(Future<T> f) throws IOException {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while loading index");
+        } catch (ExecutionException e) {
+            throw new IOException("Cannot load index", e.getCause());
+        }
+    }
+
+    private StreamingOutput streamIndexFile(File file, boolean dedup, ArtifactFormat format, ArtifactFilter filter) {
+        return out -> writeArtifacts(out, format, consumer -> {
+            // de-duplication requires to remember all artifacts that have been written
+            var seen = dedup ? new HashSet<Artifact>() : null;
+            // the filter is applied before the artifacts are even created
+            reader.readIndexFile(file, filter, a -> {
+                if (seen == null || seen.add(a)) {
+                    consumer.accept(a);
+                }
+            });
+        });
     }
 
-    private Set<Artifact> getArtifacts(int num) {
-        if (cache.containsKey(num)) {
-            LOG.info("Memory cache hit for index #{}", num);
-            return cache.get(num);
+    private static void writeArtifacts(OutputStream out, ArtifactFormat format, Consumer<Consumer<Artifact>> source) throws IOException {
+        try (var writer = format.newWriter(out)) {
+            source.accept(a -> {
+                try {
+                    writer.write(a);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
-        var file = r.download(num);
-        var artifacts = reader.readIndexFile(file);
-        cache.put(num, artifacts);
-        return artifacts;
     }
 }
\ No newline at end of file
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Minimal registry of counters, gauges, and histograms that renders its
+ * contents in the Prometheus text format. Series are identified by their name
+ * and labels (passed as alternating names and values), registering the same
+ * series twice returns the existing instance.
+ */
+public class Metrics {
+
+    /** process-wide registry, exposed via /metrics */
+    public static final Metrics DEFAULT = new Metrics();
+
+    public static final double[] DURATION_BUCKETS = { 0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 120 };
+    public static final double[] SIZE_BUCKETS = { 1 << 10, 1 << 14, 1 << 17, 1 << 20, 1 << 22, 1 << 24, 1 << 26, 1 << 28 };
+
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, help, "counter").series.computeIfAbsent(labels(labels), l -> new Counter());
+    }
+
+    public Histogram histogram(String name, String help, double[] buckets, String... labels) {
+        return (Histogram) family(name, help, "histogram").series.computeIfAbsent(labels(labels), l -> new Histogram(buckets));
+    }
+
+    /** Registers a gauge, which replaces a previously registered gauge with the same labels. */
+    public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, "gauge").series.put(labels(labels), new Gauge(value));
+    }
+
+    /** Registers a counter that is maintained elsewhere and only read on a scrape. */
+    public void counter(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, "counter").series.put(labels(labels), new Gauge(value));
+    }
+
+    private Family family(String name, String help, String type) {
+        var f = families.computeIfAbsent(name, n -> new Family(help, type));
+        if (!f.type.equals(type)) {
+            throw new IllegalArgumentException(String.format("Metric %s is already registered as a %s", name, f.type));
+        }
+        return f;
+    }
+
+    private static String labels(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be pairs of names and values");
+        }
+        var sb = new StringBuilder();
+        for (var i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(labels[i]).append("=\"");
+            var value = labels[i + 1];
+            for (var j = 0; j < value.length(); j++) {
+                var c = value.charAt(j);
+                if (c == '\\' || c == '"') {
+                    sb.append('\\').append(c);
+                } else if (c == '\n') {
+                    sb.append("\\n");
+                } else {
+                    sb.append(c);
+                }
+            }
+            sb.append('"');
+        }
+        return sb.toString();
+    }
+
+    public String scrape() {
+        var sb = new StringBuilder();
+        for (var e : families.entrySet()) {
+            var name = e.getKey();
+            var f = e.getValue();
+            sb.append("# HELP ").append(name).append(' ').append(f.help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+            sb.append("# TYPE ").append(name).append(' ').append(f.type).append('\n');
+            for (var s : f.series.entrySet()) {
+                s.getValue().write(sb, name, s.getKey());
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void sample(StringBuilder sb, String name, String labels, double value) {
+        sb.append(name);
+        if (!labels.isEmpty()) {
+            sb.append('{').append(labels).append('}');
+        }
+        sb.append(' ');
+        if (value == Double.POSITIVE_INFINITY) {
+            sb.append("+Inf");
+        } else if (value == Double.NEGATIVE_INFINITY) {
+            sb.append("-Inf");
+        } else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            sb.append((long) value);
+        } else {
+            sb.append(value);
+        }
+        sb.append('\n');
+    }
+
+    private static class Family {
+
+        private final String help;
+        private final String type;
+        private final Map<String, Series> series = new ConcurrentSkipListMap<>();
+
+        private Family(String help, String type) {
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    private interface Series {
+        void write(StringBuilder sb, String name, String labels);
+    }
+
+    public static class Counter implements Series {
+
+        private final LongAdder value = new LongAdder();
+
+        public void inc() {
+            value.increment();
+        }
+
+        public void inc(long n) {
+            value.add(n);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+
+        @Override
+        public void write(StringBuilder sb, String name, String labels) {
+            sample(sb, name, labels, value.sum());
+        }
+    }
+
+    private static class Gauge implements Series {
+
+        private final DoubleSupplier value;
+
+        private Gauge(DoubleSupplier value) {
+            this.value = value;
+        }
+
+        @Override
+        public void write(StringBuilder sb, String name, String labels) {
+            sample(sb, name, labels, value.getAsDouble());
+        }
+    }
+
+    public static class Histogram implements Series {
+
+        private final double[] bounds;
+        private final LongAdder[] buckets;
+        private final LongAdder count = new LongAdder();
+        private final DoubleAdder sum = new DoubleAdder();
+
+        private Histogram(double[] bounds) {
+            this.bounds = bounds.clone();
+            this.buckets = new LongAdder[bounds.length];
+            for (var i = 0; i < bounds.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        public void observe(double value) {
+            // only the first matching bucket is counted, the scrape accumulates them
+            for (var i = 0; i < bounds.length; i++) {
+                if (value <= bounds[i]) {
+                    buckets[i].increment();
+                    break;
+                }
+            }
+            count.increment();
+            sum.add(value);
+        }
+
+        /** Observes the time since the start (in nanos), in seconds. */
+        public void observeSince(long startNanos) {
+            observe((System.nanoTime() - startNanos) / (double) TimeUnit.SECONDS.toNanos(1));
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        @Override
+        public void write(StringBuilder sb, String name, String labels) {
+            var prefix = labels.isEmpty() ? "" : labels + ",";
+            var cumulative = 0L;
+            for (var i = 0; i < bounds.length; i++) {
+                cumulative += buckets[i].sum();
+                var le = bounds[i] == Math.rint(bounds[i]) ? Long.toString((long) bounds[i]) : Double.toString(bounds[i]);
+                sample(sb, name + "_bucket", prefix + "le=\"" + le + "\"", cumulative);
+            }
+            // the total is read separately, so it cannot be lower than the buckets
+            var total = Math.max(cumulative, count.sum());
+            sample(sb, name + "_bucket", prefix + "le=\"+Inf\"", total);
+            sample(sb, name + "_sum", labels, sum.sum());
+            sample(sb, name + "_count", labels, total);
+        }
+    }
+}
\ No newline at end of file
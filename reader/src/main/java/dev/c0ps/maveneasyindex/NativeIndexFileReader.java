@@ -0,0 +1,415 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.UTFDataFormatException;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads index files without Lucene or Plexus. The records of the index data
+ * format are decoded straight from the stream: only the fields u, i, and m are
+ * turned into strings, all other values are skipped without being decoded, and
+ * deletions, descriptors, and group lists are rejected on their first field.
+ * The coordinates are derived like in IndexDataReader and the
+ * MinimalArtifactInfoIndexCreator, so the artifacts are the same as the ones of
+ * {@link IndexFileReader}.
+ */
+public class NativeIndexFileReader extends IndexFileReader {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NativeIndexFileReader.class);
+
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_DECODED_LENGTH = 16 * 1024 * 1024;
+
+    private static final int FIELD_OTHER = 0;
+    private static final int FIELD_UINFO = 1;
+    private static final int FIELD_INFO = 2;
+    private static final int FIELD_MODIFIED = 3;
+    private static final int FIELD_REJECTED = 4;
+
+    private static final String[] REJECTED_NAMES = { "del", "DESCRIPTOR", "allGroups", "rootGroups" };
+
+    @Override
+    public void warmUp() {
+        // nothing to set up
+    }
+
+    @Override
+    protected void readDocuments(File f, ArtifactFilter filter, StringPool pool, Consumer<Artifact> consumer, long[] counts) throws IOException {
+        try (var in = new Input(open(new FileInputStream(f)))) {
+            if (in.readByte() != VERSION) {
+                throw new IOException("Provided input contains unexpected data (0x01 expected as 1st byte)!");
+            }
+            in.readLong(); // timestamp
+
+            var doc = new Record();
+            var isUnfiltered = filter.isEmpty();
+            while (doc.read(in)) {
+                counts[0]++;
+                var artifact = doc.toArtifact(filter, isUnfiltered, pool);
+                if (artifact != null) {
+                    counts[1]++;
+                    consumer.accept(artifact);
+                }
+            }
+        }
+    }
+
+    private static InputStream open(InputStream raw) throws IOException {
+        var in = new PushbackInputStream(raw, 2);
+        var b1 = in.read();
+        var b2 = b1 == -1 ? -1 : in.read();
+        if (b2 != -1) {
+            in.unread(b2);
+        }
+        if (b1 != -1) {
+            in.unread(b1);
+        }
+        return b1 == 0x1f && b2 == 0x8b ? new GZIPInputStream(in, BUFFER_SIZE) : in;
+    }
+
+    /** Reusable buffers for the relevant fields of the current record. */
+    private static class Record {
+
+        private final Value uinfo = new Value();
+        private final Value info = new Value();
+        private final Value modified = new Value();
+        private boolean isRejected;
+
+        /** @return false, if the end of the stream has been reached */
+        private boolean read(Input in) throws IOException {
+            int fieldCount;
+            try {
+                fieldCount = in.readInt();
+            } catch (EOFException e) {
+                // like IndexDataReader, a stream that ends here is complete
+                return false;
+            }
+            uinfo.clear();
+            info.clear();
+            modified.clear();
+            isRejected = false;
+
+            for (var i = 0; i < fieldCount; i++) {
+                in.readByte(); // flags
+                var field = in.readFieldName();
+                var length = in.readInt();
+                if (length < 0) {
+                    throw new IOException("Index data content is inappropriate (is junk?)");
+                }
+                if (isRejected) {
+                    in.skip(length);
+                    continue;
+                }
+                // like Document.get, only the first occurrence of a field counts
+                switch (field) {
+                case FIELD_UINFO:
+                    readOnce(in, uinfo, length);
+                    break;
+                case FIELD_INFO:
+                    readOnce(in, info, length);
+                    break;
+                case FIELD_MODIFIED:
+                    readOnce(in, modified, length);
+                    break;
+                case FIELD_REJECTED:
+                    isRejected = true;
+                    in.skip(length);
+                    break;
+                default:
+                    in.skip(length);
+                }
+            }
+            return true;
+        }
+
+        private static void readOnce(Input in, Value v, int length) throws IOException {
+            if (v.isSet) {
+                in.skip(length);
+            } else {
+                in.readChars(length, v);
+            }
+        }
+
+        private Artifact toArtifact(ArtifactFilter filter, boolean isUnfiltered, StringPool pool) {
+            // records without coordinates describe the index itself (e.g., deletions)
+            if (isRejected || !uinfo.isSet) {
+                return null;
+            }
+            var u = uinfo.chars;
+            var p1 = uinfo.indexOfSeparator(0);
+            var p2 = uinfo.indexOfSeparator(p1 + 1);
+            var p3 = uinfo.indexOfSeparator(p2 + 1);
+            if (p1 < 0 || p2 < 0 || p3 < 0) {
+                LOG.info("Skipping record with malformed coordinate ({})", uinfo);
+                return null;
+            }
+            var p4 = uinfo.indexOfSeparator(p3 + 1);
+            var classifierEnd = p4 < 0 ? uinfo.length : p4;
+            if (classifierEnd - p3 - 1 != 2 || u[p3 + 1] != 'N' || u[p3 + 2] != 'A') {
+                // artifacts with a classifier (e.g., sources) are no packages
+                return null;
+            }
+
+            var extension = getExtension(p4);
+            var g = new String(u, 0, p1);
+            // missing release dates are replaced, like IndexUtils.updateDocument does
+            var m = modified.isSet ? modified.toString() : Long.toString(System.currentTimeMillis());
+            if (!isUnfiltered && !filter.matches(extension, g, m)) {
+                return null;
+            }
+            var a = new String(u, p1 + 1, p2 - p1 - 1);
+            var v = new String(u, p2 + 1, p3 - p2 - 1);
+            return IndexFileReader.toArtifact(g, a, v, extension, m, pool);
+        }
+
+        // the info field (packaging|date|size|sources|javadoc|signature|extension)
+        // takes precedence over the extension in the coordinate
+        private String getExtension(int p4) {
+            if (!info.isSet) {
+                return p4 < 0 ? null : new String(uinfo.chars, p4 + 1, uinfo.length - p4 - 1);
+            }
+            var pos = -1;
+            for (var i = 0; i < 6 && (pos = info.indexOfSeparator(pos + 1)) >= 0; i++) {
+                if (i == 5) {
+                    return new String(info.chars, pos + 1, info.length - pos - 1);
+                }
+            }
+            var packagingEnd = info.indexOfSeparator(0);
+            var packaging = new String(info.chars, 0, packagingEnd < 0 ? info.length : packagingEnd);
+            return "pom".equals(packaging) || "war".equals(packaging) || "ear".equals(packaging) ? packaging : "jar";
+        }
+    }
+
+    private static class Value {
+
+        private char[] chars = new char[256];
+        private int length;
+        private boolean isSet;
+
+        private void clear() {
+            length = 0;
+            isSet = false;
+        }
+
+        private int indexOfSeparator(int from) {
+            for (var i = from; i < length; i++) {
+                if (chars[i] == '|') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, 0, length);
+        }
+    }
+
+    /** Buffered, unsynchronized replacement for a DataInputStream. */
+    private static class Input implements AutoCloseable {
+
+        private final InputStream in;
+        private final byte[] buf = new byte[BUFFER_SIZE];
+        private byte[] scratch = new byte[256];
+        private int pos;
+        private int limit;
+
+        private Input(InputStream in) {
+            this.in = in;
+        }
+
+        private boolean fill() throws IOException {
+            pos = 0;
+            limit = 0;
+            var n = in.read(buf, 0, buf.length);
+            if (n <= 0) {
+                return false;
+            }
+            limit = n;
+            return true;
+        }
+
+        private int readByte() throws IOException {
+            if (pos == limit && !fill()) {
+                throw new EOFException();
+            }
+            return buf[pos++] & 0xff;
+        }
+
+        private int readInt() throws IOException {
+            if (limit - pos >= 4) {
+                var b = buf;
+                var p = pos;
+                pos += 4;
+                return (b[p] & 0xff) << 24 | (b[p + 1] & 0xff) << 16 | (b[p + 2] & 0xff) << 8 | (b[p + 3] & 0xff);
+            }
+            return readByte() << 24 | readByte() << 16 | readByte() << 8 | readByte();
+        }
+
+        private long readLong() throws IOException {
+            return (long) readInt() << 32 | (readInt() & 0xffffffffL);
+        }
+
+        private void skip(int n) throws IOException {
+            while (n > 0) {
+                if (pos == limit && !fill()) {
+                    throw new EOFException();
+                }
+                var step = Math.min(n, limit - pos);
+                pos += step;
+                n -= step;
+            }
+        }
+
+        /** Reads the name of a field (as written by writeUTF) and identifies it without decoding. */
+        private int readFieldName() throws IOException {
+            var length = readByte() << 8 | readByte();
+            byte[] b;
+            int p;
+            if (limit - pos >= length) {
+                b = buf;
+                p = pos;
+                pos += length;
+            } else {
+                b = readFully(length);
+                p = 0;
+            }
+            // all relevant names are ASCII, which is encoded as-is in modified UTF-8
+            if (length == 1) {
+                switch (b[p]) {
+                case 'u':
+                    return FIELD_UINFO;
+                case 'i':
+                    return FIELD_INFO;
+                case 'm':
+                    return FIELD_MODIFIED;
+                case 'l':
+                    return FIELD_REJECTED;
+                default:
+                    return FIELD_OTHER;
+                }
+            }
+            for (var name : REJECTED_NAMES) {
+                if (equalsAscii(b, p, length, name)) {
+                    return FIELD_REJECTED;
+                }
+            }
+            return FIELD_OTHER;
+        }
+
+        private static boolean equalsAscii(byte[] b, int p, int length, String name) {
+            if (length != name.length()) {
+                return false;
+            }
+            for (var i = 0; i < length; i++) {
+                if (b[p + i] != name.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private byte[] readFully(int length) throws IOException {
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, 2 * scratch.length)];
+            }
+            var n = 0;
+            while (n < length) {
+                if (pos == limit && !fill()) {
+                    throw new EOFException();
+                }
+                var step = Math.min(length - n, limit - pos);
+                System.arraycopy(buf, pos, scratch, n, step);
+                pos += step;
+                n += step;
+            }
+            return scratch;
+        }
+
+        /** Decodes a value in modified UTF-8 (like DataInputStream.readUTF) into the buffer of the value. */
+        private void readChars(int length, Value v) throws IOException {
+            if (length > MAX_DECODED_LENGTH) {
+                throw new IOException("Index data content is inappropriate (is junk?), value of " + length + " bytes");
+            }
+            if (limit - pos >= length) {
+                decode(buf, pos, length, v);
+                pos += length;
+            } else {
+                decode(readFully(length), 0, length, v);
+            }
+        }
+
+        private static void decode(byte[] b, int from, int length, Value v) throws UTFDataFormatException {
+            if (v.chars.length < length) {
+                v.chars = new char[Math.max(length, 2 * v.chars.length)];
+            }
+            var out = v.chars;
+            var n = 0;
+            var i = from;
+            var end = from + length;
+            while (i < end) {
+                var c = b[i] & 0xff;
+                if (c < 0x80) {
+                    out[n++] = (char) c;
+                    i++;
+                } else if ((c & 0xe0) == 0xc0) {
+                    if (i + 2 > end) {
+                        throw new UTFDataFormatException("malformed input: partial character at end");
+                    }
+                    var c2 = b[i + 1];
+                    if ((c2 & 0xc0) != 0x80) {
+                        throw new UTFDataFormatException("malformed input around byte " + (i - from));
+                    }
+                    out[n++] = (char) ((c & 0x1f) << 6 | (c2 & 0x3f));
+                    i += 2;
+                } else if ((c & 0xf0) == 0xe0) {
+                    if (i + 3 > end) {
+                        throw new UTFDataFormatException("malformed input: partial character at end");
+                    }
+                    var c2 = b[i + 1];
+                    var c3 = b[i + 2];
+                    if ((c2 & 0xc0) != 0x80 || (c3 & 0xc0) != 0x80) {
+                        throw new UTFDataFormatException("malformed input around byte " + (i - from));
+                    }
+                    out[n++] = (char) ((c & 0x0f) << 12 | (c2 & 0x3f) << 6 | (c3 & 0x3f));
+                    i += 3;
+                } else {
+                    throw new UTFDataFormatException("malformed input around byte " + (i - from));
+                }
+            }
+            v.length = n;
+            v.isSet = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dev.c0ps.maveneasyindex.DownloadLimiter.Priority;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+
+/**
+ * Periodically checks whether an index has been published after the newest
+ * one in the base folder, downloads it, and keeps the newest indices in the
+ * cache, so clients that poll for new releases do not have to wait.
+ */
+@Singleton
+public class Prefetcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Prefetcher.class);
+
+    private final RepositoryUtils r;
+    private final IndexLoader loader;
+    private final long intervalMin;
+    private final int depth;
+
+    private ScheduledExecutorService scheduler;
+
+    @Inject
+    public Prefetcher(RepositoryUtils r, IndexLoader loader, @Named("Prefetcher.interval") long intervalMin, @Named("Prefetcher.depth") int depth) {
+        this.r = r;
+        this.loader = loader;
+        this.intervalMin = intervalMin;
+        this.depth = depth;
+    }
+
+    public synchronized void start() {
+        if (intervalMin <= 0 || scheduler != null) {
+            return;
+        }
+        LOG.info("Prefetching the newest {} indices every {} min", depth, intervalMin);
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            var t = new Thread(r, "prefetcher");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::prefetch, 0, intervalMin, MINUTES);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    public void prefetch() {
+        // exceptions would cancel all future executions
+        try {
+            var highest = r.getHighestLocalIndex();
+            if (highest == 0) {
+                LOG.info("No local index found, nothing to prefetch yet");
+                return;
+            }
+            for (var i = 0; i < depth && r.exists(highest + 1); i++) {
+                highest++;
+                LOG.info("Prefetching newly published index #{}", highest);
+            }
+            for (var num = Math.max(1, highest - depth + 1); num <= highest; num++) {
+                loader.get(num, Priority.BULK);
+            }
+        } catch (RuntimeException e) {
+            LOG.warn("Prefetching failed", e);
+        }
+    }
+}
\ No newline at end of file
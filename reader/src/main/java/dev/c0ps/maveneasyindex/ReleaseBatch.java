@@ -0,0 +1,237 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+
+/**
+ * Memory-mapped, columnar copy of the artifacts of one index. The file starts
+ * with a header and a string dictionary (offsets and UTF-8 data), followed by
+ * the columns: release dates (ascending, 8-byte aligned), and the dictionary
+ * ids of groupId, artifactId, version, and packaging.
+ */
+public class ReleaseBatch {
+
+    private static final int MAGIC = 0x4D454943; // "MEIC"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 40;
+
+    private final File file;
+    private final ByteBuffer buf;
+    private final int index;
+    private final int rowCount;
+    private final int dictCount;
+    private final long minDate;
+    private final long maxDate;
+
+    private final int dictOffsetsStart;
+    private final int dictDataStart;
+    private final int dateStart;
+    private final int gStart;
+    private final int aStart;
+    private final int vStart;
+    private final int pStart;
+
+    private ReleaseBatch(File file, ByteBuffer buf) throws IOException {
+        this.file = file;
+        this.buf = buf;
+        if (buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION) {
+            throw new IOException("Unknown format of release batch " + file);
+        }
+        index = buf.getInt(8);
+        rowCount = buf.getInt(12);
+        dictCount = buf.getInt(16);
+        var dictDataSize = buf.getInt(20);
+        minDate = buf.getLong(24);
+        maxDate = buf.getLong(32);
+
+        dictOffsetsStart = HEADER_SIZE;
+        dictDataStart = dictOffsetsStart + 4 * (dictCount + 1);
+        dateStart = align8(dictDataStart + dictDataSize);
+        gStart = dateStart + 8 * rowCount;
+        aStart = gStart + 4 * rowCount;
+        vStart = aStart + 4 * rowCount;
+        pStart = vStart + 4 * rowCount;
+        if (rowCount < 0 || dictCount < 0 || dictDataSize < 0 || pStart + 4L * rowCount != buf.capacity()) {
+            throw new IOException("Corrupt release batch " + file);
+        }
+    }
+
+    private static int align8(int pos) {
+        return (pos + 7) & ~7;
+    }
+
+    public static ReleaseBatch open(File f) throws IOException {
+        try (var ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            var size = ch.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Invalid size of release batch " + f);
+            }
+            return new ReleaseBatch(f, ch.map(MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public boolean overlaps(long from, long to) {
+        return rowCount > 0 && maxDate >= from && minDate < to;
+    }
+
+    public long getReleaseDate(int row) {
+        return buf.getLong(dateStart + 8 * row);
+    }
+
+    /** @return the first row that has been released at or after the date */
+    public int findFirstRow(long date) {
+        var lo = 0;
+        var hi = rowCount;
+        while (lo < hi) {
+            var mid = (lo + hi) >>> 1;
+            if (getReleaseDate(mid) < date) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Creates the artifact of a row. The decoded strings are remembered in the
+     * provided array (size {@link #newStringCache()}), so repeated strings are
+     * decoded and allocated only once.
+     */
+    public Artifact getArtifact(int row, String[] strings) {
+        var a = new Artifact();
+        a.groupId = string(buf.getInt(gStart + 4 * row), strings);
+        a.artifactId = string(buf.getInt(aStart + 4 * row), strings);
+        a.version = string(buf.getInt(vStart + 4 * row), strings);
+        a.packaging = string(buf.getInt(pStart + 4 * row), strings);
+        a.releaseDate = getReleaseDate(row);
+        return a;
+    }
+
+    public String[] newStringCache() {
+        return new String[dictCount];
+    }
+
+    private String string(int id, String[] strings) {
+        var s = strings[id];
+        if (s == null) {
+            var from = buf.getInt(dictOffsetsStart + 4 * id);
+            var to = buf.getInt(dictOffsetsStart + 4 * (id + 1));
+            var bytes = new byte[to - from];
+            buf.duplicate().position(dictDataStart + from).get(bytes);
+            s = new String(bytes, UTF_8);
+            strings[id] = s;
+        }
+        return s;
+    }
+
+    public static ReleaseBatch write(File f, int index, Collection<Artifact> artifacts) throws IOException {
+        var rows = new ArrayList<>(artifacts);
+        rows.sort(Comparator.comparingLong(a -> a.releaseDate));
+
+        var dict = new HashMap<String, Integer>();
+        var dictBytes = new ArrayList<byte[]>();
+        var ids = new int[4 * rows.size()];
+        for (var i = 0; i < rows.size(); i++) {
+            var a = rows.get(i);
+            ids[4 * i] = id(a.groupId, dict, dictBytes);
+            ids[4 * i + 1] = id(a.artifactId, dict, dictBytes);
+            ids[4 * i + 2] = id(a.version, dict, dictBytes);
+            ids[4 * i + 3] = id(a.packaging, dict, dictBytes);
+        }
+
+        var part = File.createTempFile(f.getName() + ".", ".part", f.getParentFile());
+        try {
+            try ( //
+                    var fos = new FileOutputStream(part); //
+                    var out = new DataOutputStream(new BufferedOutputStream(fos))) {
+                var dictDataSize = dictBytes.stream().mapToLong(b -> b.length).sum();
+                if (dictDataSize > Integer.MAX_VALUE / 2) {
+                    throw new IOException("Dictionary of release batch is too large");
+                }
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(index);
+                out.writeInt(rows.size());
+                out.writeInt(dictBytes.size());
+                out.writeInt((int) dictDataSize);
+                out.writeLong(rows.isEmpty() ? 0 : rows.get(0).releaseDate);
+                out.writeLong(rows.isEmpty() ? 0 : rows.get(rows.size() - 1).releaseDate);
+
+                var offset = 0;
+                out.writeInt(offset);
+                for (var b : dictBytes) {
+                    offset += b.length;
+                    out.writeInt(offset);
+                }
+                for (var b : dictBytes) {
+                    out.write(b);
+                }
+                while (out.size() % 8 != 0) {
+                    out.writeByte(0);
+                }
+                for (var a : rows) {
+                    out.writeLong(a.releaseDate);
+                }
+                for (var col = 0; col < 4; col++) {
+                    for (var i = 0; i < rows.size(); i++) {
+                        out.writeInt(ids[4 * i + col]);
+                    }
+                }
+            }
+            Files.move(part.toPath(), f.toPath(), ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(part.toPath());
+        }
+        return open(f);
+    }
+
+    private static int id(String s, HashMap<String, Integer> dict, ArrayList<byte[]> dictBytes) {
+        return dict.computeIfAbsent(s, x -> {
+            dictBytes.add(x.getBytes(UTF_8));
+            return dictBytes.size() - 1;
+        });
+    }
+}
\ No newline at end of file
@@ -0,0 +1,438 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ObjIntConsumer;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+
+/**
+ * Append-only store of all parsed artifacts, one memory-mapped
+ * {@link ReleaseBatch} per index (in releases/ inside the base folder). Range
+ * queries only touch the batches that overlap with the requested time window,
+ * and return the artifacts of all indices ordered by their release date. The
+ * order in which the indices have been added is recorded as well (one index
+ * per line in releases/order), the line number is the generation of an index.
+ */
+@Singleton
+public class ReleaseStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReleaseStore.class);
+    private static final Pattern BATCH_FILE = Pattern.compile("index-(\\d+)\\.col");
+    private static final String ORDER_FILE = "order";
+
+    private final File dir;
+    private final File orderFile;
+    private final Map<Integer, ReleaseBatch> batches = new ConcurrentHashMap<>();
+    private final Map<Integer, Integer> generations = new ConcurrentHashMap<>();
+
+    /** all batches up to this generation are visible, it is only raised after a batch has been added */
+    private volatile int generation;
+
+    @Inject
+    public ReleaseStore(@Named("RepositoryUtils.baseFolder") String baseFolder) {
+        this.dir = new File(baseFolder, "releases");
+        this.orderFile = new File(dir, ORDER_FILE);
+        dir.mkdirs();
+        var names = dir.list();
+        for (var name : names == null ? new String[0] : names) {
+            var m = BATCH_FILE.matcher(name);
+            if (m.matches()) {
+                var f = new File(dir, name);
+                try {
+                    var b = ReleaseBatch.open(f);
+                    batches.put(b.getIndex(), b);
+                } catch (IOException | RuntimeException e) {
+                    LOG.warn("Deleting unreadable release batch {}", f, e);
+                    f.delete();
+                }
+            }
+        }
+        try {
+            readOrder();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        LOG.info("Opened release store with {} indices (generation {})", batches.size(), generation);
+    }
+
+    private void readOrder() throws IOException {
+        var lines = new String[0];
+        if (orderFile.exists()) {
+            var content = Files.readString(orderFile.toPath(), UTF_8);
+            if (!content.isEmpty() && !content.endsWith("\n")) {
+                // the last line has been cut off, it still counts as a generation
+                Files.writeString(orderFile.toPath(), "\n", UTF_8, APPEND);
+            }
+            lines = content.isEmpty() ? lines : content.split("\n");
+        }
+        for (var line : lines) {
+            generation++;
+            try {
+                generations.put(Integer.parseInt(line.trim()), generation);
+            } catch (NumberFormatException e) {
+                LOG.warn("Ignoring invalid line {} in {}", generation, orderFile);
+            }
+        }
+        // e.g., batches of stores that did not record the order yet, they count as added now
+        var unordered = new ArrayList<Integer>();
+        for (var num : batches.keySet()) {
+            if (!generations.containsKey(num)) {
+                unordered.add(num);
+            }
+        }
+        unordered.sort(null);
+        for (var num : unordered) {
+            appendOrder(num);
+            generations.put(num, generation + 1);
+            generation++;
+        }
+    }
+
+    private void appendOrder(int num) throws IOException {
+        Files.writeString(orderFile.toPath(), num + "\n", UTF_8, CREATE, APPEND);
+    }
+
+    public boolean contains(int num) {
+        return batches.containsKey(num);
+    }
+
+    /** Adds the artifacts of an index, unless the index has been added before. */
+    public synchronized void add(int num, Collection<Artifact> artifacts) {
+        if (batches.containsKey(num)) {
+            return;
+        }
+        try {
+            // the generation is used up once it has been recorded, even if the batch cannot be written
+            var gen = generation + 1;
+            appendOrder(num);
+            try {
+                var b = ReleaseBatch.write(new File(dir, String.format("index-%d.col", num)), num, artifacts);
+                generations.put(num, gen);
+                batches.put(num, b);
+                LOG.info("Added {} artifacts of index #{} to the release store (generation {})", b.getRowCount(), num, gen);
+            } finally {
+                generation = gen;
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Cannot add index #{} to the release store", num, e);
+        }
+    }
+
+    /** @return the generation of the latest addition */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Passes all artifacts that have been released in the time window (from
+     * inclusive, to exclusive) to the consumer, together with the number of the
+     * containing index. Artifacts are ordered by release date, then index.
+     */
+    public void scan(long from, long to, ObjIntConsumer<Artifact> consumer) {
+        var queue = new PriorityQueue<Cursor>();
+        for (var b : batches.values()) {
+            if (b.overlaps(from, to)) {
+                var c = new Cursor(b, b.findFirstRow(from));
+                if (c.hasRow(to)) {
+                    queue.add(c);
+                }
+            }
+        }
+        while (!queue.isEmpty()) {
+            var c = queue.poll();
+            consumer.accept(c.batch.getArtifact(c.row, c.strings), c.batch.getIndex());
+            c.row++;
+            if (c.hasRow(to)) {
+                queue.add(c);
+            }
+        }
+    }
+
+    /**
+     * Returns the position that is reached after at most <code>limit</code>
+     * artifacts that have not been passed at the given position, or the given
+     * position if there are none. Only release dates are read. The result
+     * covers all indices that have been added so far, including those that have
+     * been added after the given position, so their earlier artifacts come
+     * first.
+     *
+     * @throws IllegalArgumentException if the position is from a newer store
+     */
+    public Position seek(Position after, int limit) {
+        var latest = generation;
+        if (after.getGeneration() > latest) {
+            throw new IllegalArgumentException("Unknown generation in position " + after);
+        }
+        var queue = cursorsAfter(after, latest);
+        Mark end = null;
+        for (var i = 0; i < limit && !queue.isEmpty(); i++) {
+            var c = queue.poll();
+            end = new Mark(latest, c.date, c.batch.getIndex(), c.row);
+            c.row++;
+            if (c.hasRow(Long.MAX_VALUE)) {
+                queue.add(c);
+            }
+        }
+        return end == null ? after : after.advance(end);
+    }
+
+    /**
+     * Passes all artifacts that are not passed at the first position, but at the
+     * second one (as returned by {@link #seek(Position, int)}), to the consumer.
+     * Artifacts are ordered like in {@link #scan(long, long, ObjIntConsumer)}.
+     * Indices that have been added after seeking are left for the next position.
+     */
+    public void scan(Position after, Position until, ObjIntConsumer<Artifact> consumer) {
+        var end = until.last();
+        if (end == null) {
+            return;
+        }
+        var queue = cursorsAfter(after, end.generation);
+        while (!queue.isEmpty()) {
+            var c = queue.poll();
+            if (end.isBefore(c.date, c.batch.getIndex(), c.row)) {
+                // all remaining artifacts come even later
+                return;
+            }
+            consumer.accept(c.batch.getArtifact(c.row, c.strings), c.batch.getIndex());
+            c.row++;
+            if (c.hasRow(Long.MAX_VALUE)) {
+                queue.add(c);
+            }
+        }
+    }
+
+    private PriorityQueue<Cursor> cursorsAfter(Position after, int latest) {
+        var queue = new PriorityQueue<Cursor>();
+        for (var b : batches.values()) {
+            var gen = generations.get(b.getIndex());
+            if (gen == null || gen > latest) {
+                continue;
+            }
+            var start = after.startOf(gen);
+            // the min/max summary of the batch is enough to skip it
+            if (!b.overlaps(start.date, Long.MAX_VALUE)) {
+                continue;
+            }
+            int row;
+            if (b.getIndex() < start.index) {
+                row = start.date == Long.MAX_VALUE ? b.getRowCount() : b.findFirstRow(start.date + 1);
+            } else if (b.getIndex() == start.index) {
+                row = Math.max(b.findFirstRow(start.date), start.row + 1);
+            } else {
+                row = b.findFirstRow(start.date);
+            }
+            var c = new Cursor(b, row);
+            if (c.hasRow(Long.MAX_VALUE)) {
+                queue.add(c);
+            }
+        }
+        return queue;
+    }
+
+    /**
+     * Progress through the releases after a timestamp, which can be passed to
+     * clients as an opaque token. For every generation of indices, it records
+     * the last artifact (release date, index, row in the index) that has been
+     * passed, so artifacts of indices that are added later are still passed,
+     * even if they have been released before.
+     */
+    public static class Position {
+
+        private final long since;
+        /** ascending generations, each mark covers all indices after the previous one */
+        private final List<Mark> marks;
+
+        private Position(long since, List<Mark> marks) {
+            this.since = since;
+            this.marks = marks;
+        }
+
+        /** @return the position after all artifacts released at or before the date */
+        public static Position after(long date) {
+            return new Position(date, List.of());
+        }
+
+        public static Position parse(String token) {
+            var parts = token.split("\\.");
+            if (parts.length % 4 != 1) {
+                throw new IllegalArgumentException("Invalid position: " + token);
+            }
+            try {
+                var marks = new ArrayList<Mark>();
+                for (var i = 1; i < parts.length; i += 4) {
+                    var m = new Mark(Integer.parseInt(parts[i]), Long.parseLong(parts[i + 1]), Integer.parseInt(parts[i + 2]), Integer.parseInt(parts[i + 3]));
+                    // later generations have not been passed as far, otherwise they would be covered by the same mark
+                    var prev = marks.isEmpty() ? null : marks.get(marks.size() - 1);
+                    if (m.generation < 1 || prev != null && (m.generation <= prev.generation || !m.isBefore(prev.date, prev.index, prev.row))) {
+                        throw new IllegalArgumentException("Invalid position: " + token);
+                    }
+                    marks.add(m);
+                }
+                return new Position(Long.parseLong(parts[0]), List.copyOf(marks));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid position: " + token, e);
+            }
+        }
+
+        public long getSince() {
+            return since;
+        }
+
+        /** @return the latest generation that has been seen, or 0 */
+        public int getGeneration() {
+            var last = last();
+            return last == null ? 0 : last.generation;
+        }
+
+        private Mark last() {
+            return marks.isEmpty() ? null : marks.get(marks.size() - 1);
+        }
+
+        /** @return the last artifact that has been passed for indices of the generation */
+        private Mark startOf(int gen) {
+            for (var m : marks) {
+                if (gen <= m.generation) {
+                    return m;
+                }
+            }
+            return new Mark(Integer.MAX_VALUE, since, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        }
+
+        /** Passes everything up to the end in all generations up to the one of the end. */
+        private Position advance(Mark end) {
+            var advanced = new ArrayList<Mark>();
+            for (var m : marks) {
+                if (end.isBefore(m.date, m.index, m.row)) {
+                    advanced.add(m);
+                }
+            }
+            advanced.add(end);
+            return new Position(since, List.copyOf(advanced));
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Position)) {
+                return false;
+            }
+            var o = (Position) obj;
+            return since == o.since && marks.equals(o.marks);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(since) * 31 + marks.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            var sb = new StringBuilder().append(since);
+            for (var m : marks) {
+                sb.append('.').append(m.generation).append('.').append(m.date).append('.').append(m.index).append('.').append(m.row);
+            }
+            return sb.toString();
+        }
+    }
+
+    private static class Mark {
+
+        private final int generation;
+        private final long date;
+        private final int index;
+        private final int row;
+
+        private Mark(int generation, long date, int index, int row) {
+            this.generation = generation;
+            this.date = date;
+            this.index = index;
+            this.row = row;
+        }
+
+        private boolean isBefore(long otherDate, int otherIndex, int otherRow) {
+            if (date != otherDate) {
+                return date < otherDate;
+            }
+            if (index != otherIndex) {
+                return index < otherIndex;
+            }
+            return row < otherRow;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Mark)) {
+                return false;
+            }
+            var o = (Mark) obj;
+            return generation == o.generation && date == o.date && index == o.index && row == o.row;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((generation * 31 + Long.hashCode(date)) * 31 + index) * 31 + row;
+        }
+    }
+
+    private static class Cursor implements Comparable<Cursor> {
+
+        private final ReleaseBatch batch;
+        private final String[] strings;
+        private int row;
+        private long date;
+
+        private Cursor(ReleaseBatch batch, int row) {
+            this.batch = batch;
+            this.strings = batch.newStringCache();
+            this.row = row;
+        }
+
+        private boolean hasRow(long to) {
+            if (row >= batch.getRowCount()) {
+                return false;
+            }
+            date = batch.getReleaseDate(row);
+            return date < to;
+        }
+
+        @Override
+        public int compareTo(Cursor o) {
+            var cmp = Long.compare(date, o.date);
+            return cmp != 0 ? cmp : Integer.compare(batch.getIndex(), o.batch.getIndex());
+        }
+    }
+}
\ No newline at end of file
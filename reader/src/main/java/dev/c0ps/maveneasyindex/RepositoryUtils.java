@@ -15,68 +15,233 @@
  */
 package dev.c0ps.maveneasyindex;
 
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
-import org.codehaus.plexus.util.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import dev.c0ps.maveneasyindex.DownloadLimiter.Priority;
 import jakarta.inject.Inject;
 import jakarta.inject.Named;
 
 public class RepositoryUtils {
 
     private static final Logger LOG = LoggerFactory.getLogger(RepositoryUtils.class);
+    private static final Pattern TMP_FILE = Pattern.compile("maven-crawler-(\\d+)\\.tmp");
+    private static final long DEFAULT_MISSING_TTL_SEC = 60;
+    // clients can probe arbitrary numbers, so only this many missing indices are remembered
+    static final int MAX_MISSING = 10_000;
+
+    private static final Metrics.Counter DOWNLOAD_FAILURES = Metrics.DEFAULT.counter("maven_easy_index_download_failures_total", "Failed downloads of index files");
+    private static final Metrics.Histogram DOWNLOAD_DURATION = Metrics.DEFAULT.histogram("maven_easy_index_download_duration_seconds",
+            "Duration of successful downloads of index files", Metrics.DURATION_BUCKETS);
 
     private final String indexUrl;
     private final String baseFolder;
+    private final long missingTtlNanos;
+    private final HttpDownloader downloader;
+    private final DownloadLimiter limiter;
+
+    private final Map<Integer, CompletableFuture<File>> downloads = new ConcurrentHashMap<>();
+    private final Map<Integer, DownloadLimiter.Ticket> queued = new ConcurrentHashMap<>();
+
+    // published indices never disappear, but missing ones are published eventually
+    private final Set<Integer> existing = ConcurrentHashMap.newKeySet();
+    private final Map<Integer, Long> missingUntil = new ConcurrentHashMap<>();
+
+    public RepositoryUtils(String indexUrl, String baseFolder) {
+        this(indexUrl, baseFolder, DEFAULT_MISSING_TTL_SEC);
+    }
+
+    public RepositoryUtils(String indexUrl, String baseFolder, long missingTtlSec) {
+        this(indexUrl, baseFolder, missingTtlSec, new HttpDownloader(), new DownloadLimiter());
+    }
 
     @Inject
-    public RepositoryUtils(@Named("RepositoryUtils.indexUrl") String indexUrl, @Named("RepositoryUtils.baseFolder") String baseFolder) {
+    public RepositoryUtils(@Named("RepositoryUtils.indexUrl") String indexUrl, @Named("RepositoryUtils.baseFolder") String baseFolder,
+            @Named("RepositoryUtils.missingTtl") long missingTtlSec, HttpDownloader downloader, DownloadLimiter limiter) {
         this.indexUrl = indexUrl;
         this.baseFolder = baseFolder;
+        this.missingTtlNanos = TimeUnit.SECONDS.toNanos(missingTtlSec);
+        this.downloader = downloader;
+        this.limiter = limiter;
     }
 
     public boolean exists(int index) {
         LOG.info("Checking existence of index #{}", index);
+        if (existing.contains(index)) {
+            return true;
+        }
         if (existsLocally(index)) {
             LOG.info("Index #{} exists locally", index);
+            existing.add(index);
             return true;
         }
+        var until = missingUntil.get(index);
+        if (until != null) {
+            if (System.nanoTime() - until < 0) {
+                return false;
+            }
+            missingUntil.remove(index, until);
+        }
         try {
-            downloadRaw(index);
-            return true;
+            if (existsRemotely(index)) {
+                existing.add(index);
+                return true;
+            }
+            rememberMissing(index);
+            return false;
         } catch (IOException e) {
+            // connection problems are not cached, the next request tries again
+            LOG.warn("Cannot check existence of index #{}", index, e);
             return false;
         }
     }
 
+    private void rememberMissing(int index) {
+        var now = System.nanoTime();
+        // cheap compared to the request that has just been sent
+        missingUntil.values().removeIf(until -> now - until >= 0);
+        if (missingUntil.size() < MAX_MISSING) {
+            missingUntil.put(index, now + missingTtlNanos);
+        }
+    }
+
+    int getMissingCount() {
+        return missingUntil.size();
+    }
+
+    private boolean existsRemotely(int index) throws IOException {
+        return downloader.exists(getUrl(index));
+    }
+
     private boolean existsLocally(int index) {
         return getTmpFileFor(index).exists();
     }
 
+    /** Returns the highest index number that has been downloaded, or 0 if none exists. */
+    public int getHighestLocalIndex() {
+        var nums = getLocalIndices();
+        return nums.isEmpty() ? 0 : nums.get(nums.size() - 1);
+    }
+
+    /** Returns the numbers of all indices that have been downloaded, in ascending order. */
+    public List<Integer> getLocalIndices() {
+        var names = new File(baseFolder).list();
+        var nums = new ArrayList<Integer>();
+        if (names != null) {
+            for (var name : names) {
+                var m = TMP_FILE.matcher(name);
+                if (m.matches()) {
+                    nums.add(Integer.parseInt(m.group(1)));
+                }
+            }
+        }
+        Collections.sort(nums);
+        return nums;
+    }
+
     public File download(int index) {
+        return download(index, Priority.INTERACTIVE);
+    }
+
+    /** Bulk downloads wait until no interactive download is queued anymore. */
+    public File download(int index, Priority priority) {
         LOG.debug("Downloading index #{}", index);
         try {
-            return downloadRaw(index);
+            return downloadRaw(index, priority);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
-    private File downloadRaw(int index) throws IOException {
+    private File downloadRaw(int index, Priority priority) throws IOException {
         var to = getTmpFileFor(index);
         if (to.exists()) {
             LOG.info("Index #{} exists locally", index);
             return to;
         }
+
+        // concurrent requests for the same index share a single download
+        var download = new CompletableFuture<File>();
+        var running = downloads.putIfAbsent(index, download);
+        if (running != null) {
+            LOG.info("Waiting for running download of index #{}", index);
+            var ticket = queued.get(index);
+            if (ticket != null && priority == Priority.INTERACTIVE) {
+                ticket.promote();
+            }
+            return await(running);
+        }
+        try {
+            if (!to.exists()) {
+                downloadAtomically(index, to, priority);
+            }
+            existing.add(index);
+            missingUntil.remove(index);
+            download.complete(to);
+            return to;
+        } catch (IOException | RuntimeException e) {
+            download.completeExceptionally(e);
+            throw e;
+        } finally {
+            downloads.remove(index, download);
+        }
+    }
+
+    private void downloadAtomically(int index, File to, Priority priority) throws IOException {
         var from = getUrl(index);
-        LOG.info("Downloading index #{} from {}", index, from);
-        FileUtils.copyURLToFile(from, to);
-        return to;
+        // download into a separate file, so the final name never points to a partial file,
+        // the partial file is kept after a failure and resumed by the next download
+        var part = new File(to.getParentFile(), to.getName() + ".part");
+        try (var ticket = limiter.enqueue(priority)) {
+            queued.put(index, ticket);
+            try {
+                ticket.await();
+            } finally {
+                queued.remove(index, ticket);
+            }
+            LOG.info("Downloading index #{} from {}", index, from);
+            var start = System.nanoTime();
+            downloader.download(from, part, limiter::throttle);
+            Files.move(part.toPath(), to.toPath(), ATOMIC_MOVE);
+            DOWNLOAD_DURATION.observeSince(start);
+        } catch (IOException | RuntimeException e) {
+            DOWNLOAD_FAILURES.inc();
+            throw e;
+        }
+    }
+
+    private static File await(CompletableFuture<File> download) throws IOException {
+        try {
+            return download.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for download");
+        } catch (ExecutionException e) {
+            var cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw (RuntimeException) cause;
+        }
     }
 
     private File getTmpFileFor(int index) {
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.container.ResourceInfo;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.ext.Provider;
+import jakarta.ws.rs.ext.WriterInterceptor;
+import jakarta.ws.rs.ext.WriterInterceptorContext;
+
+/**
+ * Tracks the number of requests in flight and the latency per endpoint.
+ * Requests with a response body are only completed once the body has been
+ * written, so streamed responses are measured in full.
+ */
+@Provider
+public class RequestMetrics implements ContainerRequestFilter, ContainerResponseFilter, WriterInterceptor {
+
+    private static final String START = RequestMetrics.class.getName() + ".start";
+    private static final String ENDPOINT = RequestMetrics.class.getName() + ".endpoint";
+
+    private static final AtomicInteger IN_FLIGHT = new AtomicInteger();
+
+    static {
+        Metrics.DEFAULT.gauge("maven_easy_index_requests_in_flight", "Requests that are currently being processed", IN_FLIGHT::get);
+    }
+
+    @Context
+    private ResourceInfo resourceInfo;
+
+    @Override
+    public void filter(ContainerRequestContext req) {
+        IN_FLIGHT.incrementAndGet();
+        req.setProperty(START, System.nanoTime());
+    }
+
+    @Override
+    public void filter(ContainerRequestContext req, ContainerResponseContext res) {
+        if (req.getProperty(START) == null) {
+            // request has been rejected before the request filter ran
+            return;
+        }
+        var endpoint = req.getMethod() + " " + getPath();
+        if (res.hasEntity()) {
+            req.setProperty(ENDPOINT, endpoint);
+        } else {
+            complete((Long) req.getProperty(START), endpoint);
+            req.removeProperty(START);
+        }
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext ctx) throws IOException {
+        try {
+            ctx.proceed();
+        } finally {
+            var start = ctx.getProperty(START);
+            var endpoint = ctx.getProperty(ENDPOINT);
+            if (start != null && endpoint != null) {
+                complete((Long) start, (String) endpoint);
+                ctx.removeProperty(START);
+            }
+        }
+    }
+
+    private static void complete(long start, String endpoint) {
+        IN_FLIGHT.decrementAndGet();
+        Metrics.DEFAULT.histogram("maven_easy_index_request_duration_seconds", "Duration of requests until the response has been written",
+                Metrics.DURATION_BUCKETS, "endpoint", endpoint).observeSince(start);
+    }
+
+    // uses the path template, the actual paths would create one series per index
+    private String getPath() {
+        var method = resourceInfo == null ? null : resourceInfo.getResourceMethod();
+        if (method == null) {
+            return "unmatched";
+        }
+        var path = method.getAnnotation(Path.class);
+        return path == null ? "/" : path.value();
+    }
+}
\ No newline at end of file
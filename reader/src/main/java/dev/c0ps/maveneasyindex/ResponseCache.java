@@ -0,0 +1,123 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.CRC32C;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+/**
+ * Published indices never change, so their encoded responses can be kept and
+ * re-sent as-is. Every combination of index, format, and compression is cached
+ * separately, the compressed variant is derived from the uncompressed one.
+ */
+@Singleton
+public class ResponseCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ResponseCache.class);
+
+    private static final String ENCODE_DURATION = "maven_easy_index_encode_duration_seconds";
+
+    private final IndexLoader loader;
+    private final BoundedCache<String, EncodedResponse> cache;
+
+    @Inject
+    public ResponseCache(IndexLoader loader, BoundedCache<String, EncodedResponse> cache) {
+        this.loader = loader;
+        this.cache = cache;
+    }
+
+    public EncodedResponse get(int num, ArtifactFormat format, boolean isGzip) {
+        var key = key(num, format, false);
+        if (!isGzip) {
+            return cache.getOrLoad(key, k -> encode(num, format));
+        }
+        return cache.getOrLoad(key(num, format, true), k -> compress(cache.getOrLoad(key, kk -> encode(num, format))));
+    }
+
+    /** Checks whether the response can be sent without loading or encoding anything. */
+    public boolean contains(int num, ArtifactFormat format, boolean isGzip) {
+        return cache.contains(key(num, format, isGzip));
+    }
+
+    private static String key(int num, ArtifactFormat format, boolean isGzip) {
+        return isGzip ? num + "/" + format + "/gzip" : num + "/" + format;
+    }
+
+    private EncodedResponse encode(int num, ArtifactFormat format) {
+        var artifacts = loader.get(num);
+        var start = System.nanoTime();
+        var baos = new ByteArrayOutputStream();
+        try (var w = format.newWriter(baos)) {
+            for (var a : artifacts) {
+                w.write(a);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        var bytes = baos.toByteArray();
+        Metrics.DEFAULT.histogram(ENCODE_DURATION, "Duration of encoding the artifacts of an index", Metrics.DURATION_BUCKETS, "format", format.name().toLowerCase())
+                .observeSince(start);
+        LOG.info("Encoded {} artifacts of index #{} as {} ({} bytes)", artifacts.size(), num, format, bytes.length);
+        return new EncodedResponse(bytes, etag(num, format, bytes), false);
+    }
+
+    private static EncodedResponse compress(EncodedResponse plain) {
+        var baos = new ByteArrayOutputStream(plain.bytes.length / 4);
+        try (var gz = new GZIPOutputStream(baos)) {
+            gz.write(plain.bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // strong ETags must differ between content encodings
+        return new EncodedResponse(baos.toByteArray(), plain.etag + "-gzip", true);
+    }
+
+    private static String etag(int num, ArtifactFormat format, byte[] bytes) {
+        var crc = new CRC32C();
+        crc.update(bytes);
+        return String.format("%d-%s-%x-%08x", num, format.name().toLowerCase(), bytes.length, crc.getValue());
+    }
+
+    public String stats() {
+        return cache.stats();
+    }
+
+    public static class EncodedResponse {
+
+        public final byte[] bytes;
+        public final String etag;
+        public final boolean isGzip;
+
+        public EncodedResponse(byte[] bytes, String etag, boolean isGzip) {
+            this.bytes = bytes;
+            this.etag = etag;
+            this.isGzip = isGzip;
+        }
+
+        public long estimateSize() {
+            return 64 + bytes.length + 2 * etag.length();
+        }
+    }
+}
\ No newline at end of file
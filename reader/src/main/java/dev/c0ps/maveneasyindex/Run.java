@@ -32,11 +32,22 @@ public class Run implements Runnable {
 
     @Override
     public void run() {
+        injector.getInstance(IndexFileReader.class).warmUp();
+
         var server = new HttpServerImpl(injector, 8080, "/");
 
         server.register(IndexService.class);
+        server.register(RequestMetrics.class);
 
         Runtime.getRuntime().addShutdownHook(new HttpServerGracefulShutdownThread(server));
         server.start();
+
+        injector.getInstance(Prefetcher.class).start();
+
+        var backfill = new Thread(() -> injector.getInstance(IndexLoader.class).indexStoredArtifacts(), "index-backfill");
+        backfill.setDaemon(true);
+        backfill.start();
+
+        injector.getInstance(FullIndex.class).start();
     }
 }
\ No newline at end of file
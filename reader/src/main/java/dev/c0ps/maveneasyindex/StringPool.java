@@ -0,0 +1,42 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Flyweight pool for the highly repetitive coordinate strings of an index
+ * (e.g., group ids or packaging types). Equal strings are replaced by a single
+ * shared instance, which reduces the heap footprint and turns most string
+ * comparisons into identity checks. Not thread-safe, use one pool per read.
+ */
+public class StringPool {
+
+    private final Map<String, String> pool = new HashMap<>();
+
+    public String intern(String s) {
+        if (s == null) {
+            return null;
+        }
+        var pooled = pool.putIfAbsent(s, s);
+        return pooled == null ? s : pooled;
+    }
+
+    public int size() {
+        return pool.size();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import java.util.Objects;
+
+/** One published version of a groupId:artifactId, as found in a specific index. */
+public class VersionEntry {
+
+    public String version;
+    public String packaging;
+    public long releaseDate;
+    public int index;
+
+    public VersionEntry() {
+        // for deserialization
+    }
+
+    public VersionEntry(String version, String packaging, long releaseDate, int index) {
+        this.version = version;
+        this.packaging = packaging;
+        this.releaseDate = releaseDate;
+        this.index = index;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(version, packaging, releaseDate, index);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        var other = (VersionEntry) obj;
+        return releaseDate == other.releaseDate && index == other.index //
+                && Objects.equals(version, other.version) && Objects.equals(packaging, other.packaging);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s:%s:%d (#%d)", version, packaging, releaseDate, index);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,325 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+
+/**
+ * Persistent, cross-index lookup from "groupId:artifactId" to all known
+ * versions. Every parsed index is written as a new {@link VersionSegment}.
+ * Whenever {@value #MERGE_FACTOR} segments of a similar size exist, they are
+ * merged into a larger one, so a lookup only has to search a number of
+ * segments that grows logarithmically with the number of indices. Merges run
+ * on a background thread, so they neither delay the request that has added an
+ * index nor concurrent additions.
+ */
+@Singleton
+public class VersionIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger(VersionIndex.class);
+
+    private static final Pattern SEGMENT_FILE = Pattern.compile("versions-(\\d+)\\.seg");
+    static final int MERGE_FACTOR = 4;
+    private static final long COMPACTION_RETRY_MS = TimeUnit.MINUTES.toMillis(10);
+
+    private static final Comparator<VersionEntry> ORDER = Comparator //
+            .comparingLong((VersionEntry e) -> e.releaseDate) //
+            .thenComparing(e -> e.version) //
+            .thenComparingInt(e -> e.index);
+
+    private final File dir;
+    private final Executor compactor;
+    private final Set<Integer> covered = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean isCompactionScheduled = new AtomicBoolean();
+    private final Object compactionLock = new Object();
+
+    // replaced as a whole, so lookups can work on a consistent snapshot without locking
+    private volatile List<VersionSegment> segments = List.of();
+    private long nextSeq = 1;
+    private volatile long nextCompactionAttempt;
+
+    @Inject
+    public VersionIndex(@Named("RepositoryUtils.baseFolder") String baseFolder) {
+        this(baseFolder, Executors.newSingleThreadExecutor(r -> {
+            var t = new Thread(r, "version-compaction");
+            t.setDaemon(true);
+            return t;
+        }));
+    }
+
+    /** The compactor runs the merges, it must not run them concurrently. */
+    VersionIndex(String baseFolder, Executor compactor) {
+        this.dir = new File(baseFolder, "versions");
+        this.compactor = compactor;
+        open();
+    }
+
+    private synchronized void open() {
+        dir.mkdirs();
+        var files = new TreeMap<Long, File>(Comparator.reverseOrder());
+        var names = dir.list();
+        for (var name : names == null ? new String[0] : names) {
+            var m = SEGMENT_FILE.matcher(name);
+            if (m.matches()) {
+                files.put(Long.parseLong(m.group(1)), new File(dir, name));
+            }
+        }
+        var loaded = new ArrayList<VersionSegment>();
+        // newest first: the inputs of an interrupted merge are covered by its result
+        for (var e : files.entrySet()) {
+            nextSeq = Math.max(nextSeq, e.getKey() + 1);
+            try {
+                var s = VersionSegment.open(e.getValue());
+                if (isCovered(s.getIndices())) {
+                    LOG.info("Deleting stale version segment {}", e.getValue());
+                    delete(s);
+                    continue;
+                }
+                loaded.add(s);
+                Arrays.stream(s.getIndices()).forEach(covered::add);
+            } catch (IOException | RuntimeException ex) {
+                LOG.warn("Deleting unreadable version segment {}", e.getValue(), ex);
+                e.getValue().delete();
+            }
+        }
+        segments = List.copyOf(loaded);
+        LOG.info("Opened version index with {} segments, covering {} indices", segments.size(), covered.size());
+    }
+
+    private boolean isCovered(int[] indices) {
+        return Arrays.stream(indices).allMatch(covered::contains);
+    }
+
+    public boolean contains(int num) {
+        return covered.contains(num);
+    }
+
+    int getSegmentCount() {
+        return segments.size();
+    }
+
+    /** @return all versions of the artifact, ordered by release date */
+    public List<VersionEntry> lookup(String groupId, String artifactId) {
+        var key = key(groupId, artifactId);
+        var versions = new ArrayList<VersionEntry>();
+        for (var s : segments) {
+            versions.addAll(s.lookup(key));
+        }
+        versions.sort(ORDER);
+        return versions;
+    }
+
+    private static byte[] key(String groupId, String artifactId) {
+        // neither field can contain a colon, so the key is unambiguous
+        return (groupId + ":" + artifactId).getBytes(UTF_8);
+    }
+
+    /**
+     * Adds the artifacts of an index, unless the index has been added before.
+     * Merging the new segment into larger ones is left to the compactor.
+     */
+    public void add(int num, Collection<Artifact> artifacts) {
+        if (addSegment(num, artifacts)) {
+            scheduleCompaction();
+        }
+    }
+
+    private synchronized boolean addSegment(int num, Collection<Artifact> artifacts) {
+        if (covered.contains(num)) {
+            return false;
+        }
+        var byKey = new TreeMap<byte[], List<VersionEntry>>(Arrays::compareUnsigned);
+        var keys = new HashMap<String, byte[]>();
+        for (var a : artifacts) {
+            var key = keys.computeIfAbsent(a.groupId + ":" + a.artifactId, k -> k.getBytes(UTF_8));
+            byKey.computeIfAbsent(key, k -> new ArrayList<>()) //
+                    .add(new VersionEntry(a.version, a.packaging, a.releaseDate, num));
+        }
+        try {
+            var records = byKey.entrySet().stream() //
+                    .map(e -> new VersionSegment.Record(e.getKey(), e.getValue())) //
+                    .iterator();
+            var s = VersionSegment.write(nextFile(), records, new int[] { num });
+            var updated = new ArrayList<>(segments);
+            updated.add(s);
+            segments = List.copyOf(updated);
+            covered.add(num);
+            LOG.info("Added {} versions of index #{} to the version index", s.getEntryCount(), num);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Cannot add index #{} to the version index", num, e);
+            return false;
+        }
+    }
+
+    private synchronized File nextFile() {
+        return new File(dir, String.format("versions-%d.seg", nextSeq++));
+    }
+
+    private void scheduleCompaction() {
+        if (isCompactionScheduled.compareAndSet(false, true)) {
+            compactor.execute(this::compact);
+        }
+    }
+
+    private void compact() {
+        synchronized (compactionLock) {
+            // segments that are added from now on schedule another run
+            isCompactionScheduled.set(false);
+            if (System.currentTimeMillis() < nextCompactionAttempt) {
+                return;
+            }
+            try {
+                while (true) {
+                    var tiers = new HashMap<Integer, List<VersionSegment>>();
+                    for (var s : segments) {
+                        tiers.computeIfAbsent(tier(s), t -> new ArrayList<>()).add(s);
+                    }
+                    var full = tiers.values().stream().filter(l -> l.size() >= MERGE_FACTOR).findFirst();
+                    if (full.isEmpty()) {
+                        return;
+                    }
+                    merge(full.get());
+                }
+            } catch (IOException | RuntimeException e) {
+                // the added segments are still searched, only lookups get slower
+                nextCompactionAttempt = System.currentTimeMillis() + COMPACTION_RETRY_MS;
+                LOG.warn("Cannot merge version segments, retrying in {} min at the earliest", TimeUnit.MILLISECONDS.toMinutes(COMPACTION_RETRY_MS), e);
+            }
+        }
+    }
+
+    /** segments of the same tier differ in size by less than the merge factor */
+    private static int tier(VersionSegment s) {
+        var log2 = 63 - Long.numberOfLeadingZeros(Math.max(1, s.getEntryCount()));
+        return log2 / 2;
+    }
+
+    private void merge(List<VersionSegment> inputs) throws IOException {
+        var start = System.nanoTime();
+        var indices = inputs.stream().flatMapToInt(s -> Arrays.stream(s.getIndices())).sorted().toArray();
+        var merged = VersionSegment.write(nextFile(), new MergingIterator(inputs), indices);
+
+        synchronized (this) {
+            // only the compactor removes segments, so all inputs are still present
+            var updated = new ArrayList<>(segments);
+            updated.removeAll(inputs);
+            updated.add(merged);
+            segments = List.copyOf(updated);
+        }
+        inputs.forEach(VersionIndex::delete);
+        LOG.info("Merged {} version segments into {} ({} keys, {} versions) in {} ms", inputs.size(), merged.getFile().getName(), //
+                merged.getKeyCount(), merged.getEntryCount(), (System.nanoTime() - start) / 1000000);
+    }
+
+    private static void delete(VersionSegment s) {
+        // readers of an older snapshot can still access the mapped memory
+        if (!s.getFile().delete()) {
+            LOG.warn("Cannot delete version segment {}", s.getFile());
+        }
+    }
+
+    private static class MergingIterator implements Iterator<VersionSegment.Record> {
+
+        private final PriorityQueue<Cursor> queue = new PriorityQueue<>();
+
+        private MergingIterator(List<VersionSegment> inputs) {
+            for (var i = 0; i < inputs.size(); i++) {
+                var c = new Cursor(inputs.get(i), i);
+                if (c.current != null) {
+                    queue.add(c);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public VersionSegment.Record next() {
+            if (queue.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            var key = queue.peek().current.key;
+            var entries = new LinkedHashSet<VersionEntry>();
+            while (!queue.isEmpty() && Arrays.equals(queue.peek().current.key, key)) {
+                var c = queue.poll();
+                entries.addAll(c.current.entries);
+                if (c.advance()) {
+                    queue.add(c);
+                }
+            }
+            return new VersionSegment.Record(key, new ArrayList<>(entries));
+        }
+    }
+
+    private static class Cursor implements Comparable<Cursor> {
+
+        private final VersionSegment segment;
+        private final int order;
+        private int pos;
+        private VersionSegment.Record current;
+
+        private Cursor(VersionSegment segment, int order) {
+            this.segment = segment;
+            this.order = order;
+            this.pos = -1;
+            advance();
+        }
+
+        private boolean advance() {
+            pos++;
+            current = pos < segment.getKeyCount() ? segment.read(pos) : null;
+            return current != null;
+        }
+
+        @Override
+        public int compareTo(Cursor o) {
+            var cmp = Arrays.compareUnsigned(current.key, o.current.key);
+            return cmp != 0 ? cmp : Integer.compare(order, o.order);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Immutable, memory-mapped file that maps "groupId:artifactId" keys to their
+ * versions. The records are written in the (unsigned byte) order of their keys,
+ * followed by a table of record offsets for binary search, the list of indices
+ * that are contained, and a fixed-size footer.
+ */
+public class VersionSegment {
+
+    private static final int MAGIC = 0x4D454956; // "MEIV"
+    private static final int VERSION = 1;
+    private static final int FOOTER_SIZE = 40;
+    private static final int MAX_SIZE = Integer.MAX_VALUE - 64 * 1024 * 1024;
+
+    private final File file;
+    private final ByteBuffer buf;
+    private final int keyCount;
+    private final int offsetsStart;
+    private final long entryCount;
+    private final int[] indices;
+
+    private VersionSegment(File file, ByteBuffer buf) throws IOException {
+        this.file = file;
+        this.buf = buf;
+        var p = buf.capacity() - FOOTER_SIZE;
+        var offsetsStartL = buf.getLong(p);
+        keyCount = buf.getInt(p + 8);
+        var indicesStartL = buf.getLong(p + 12);
+        var indexCount = buf.getInt(p + 20);
+        entryCount = buf.getLong(p + 24);
+        if (buf.getInt(p + 36) != MAGIC || buf.getInt(p + 32) != VERSION) {
+            throw new IOException("Unknown format of version segment " + file);
+        }
+        if (keyCount < 0 || indexCount < 0 || offsetsStartL + 4L * keyCount != indicesStartL || indicesStartL + 4L * indexCount != p) {
+            throw new IOException("Corrupt version segment " + file);
+        }
+        offsetsStart = (int) offsetsStartL;
+        indices = new int[indexCount];
+        for (var i = 0; i < indexCount; i++) {
+            indices[i] = buf.getInt((int) indicesStartL + 4 * i);
+        }
+    }
+
+    public static VersionSegment open(File f) throws IOException {
+        try (var ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            var size = ch.size();
+            if (size < FOOTER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Invalid size of version segment " + f);
+            }
+            // the mapping stays valid after the channel has been closed
+            return new VersionSegment(f, ch.map(MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int getKeyCount() {
+        return keyCount;
+    }
+
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    public int[] getIndices() {
+        return indices.clone();
+    }
+
+    /** @return the versions of the key, an empty list if it is unknown */
+    public List<VersionEntry> lookup(byte[] key) {
+        var in = buf.duplicate();
+        var lo = 0;
+        var hi = keyCount - 1;
+        while (lo <= hi) {
+            var mid = (lo + hi) >>> 1;
+            in.position(buf.getInt(offsetsStart + 4 * mid));
+            var cmp = compareKey(in, key);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return readEntries(in);
+            }
+        }
+        return List.of();
+    }
+
+    /** compares the key at the current position and skips it */
+    private static int compareKey(ByteBuffer in, byte[] key) {
+        var len = readVarInt(in);
+        var start = in.position();
+        in.position(start + len);
+        var n = Math.min(len, key.length);
+        for (var i = 0; i < n; i++) {
+            var cmp = Integer.compare(in.get(start + i) & 0xFF, key[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(len, key.length);
+    }
+
+    public Record read(int i) {
+        var in = buf.duplicate();
+        in.position(buf.getInt(offsetsStart + 4 * i));
+        var key = new byte[readVarInt(in)];
+        in.get(key);
+        return new Record(key, readEntries(in));
+    }
+
+    private static List<VersionEntry> readEntries(ByteBuffer in) {
+        var n = readVarInt(in);
+        var entries = new ArrayList<VersionEntry>(n);
+        for (var i = 0; i < n; i++) {
+            var version = readString(in);
+            var packaging = readString(in);
+            var releaseDate = in.getLong();
+            var index = readVarInt(in);
+            entries.add(new VersionEntry(version, packaging, releaseDate, index));
+        }
+        return entries;
+    }
+
+    private static String readString(ByteBuffer in) {
+        var bytes = new byte[readVarInt(in)];
+        in.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static int readVarInt(ByteBuffer in) {
+        var i = 0;
+        for (var shift = 0; shift < 32; shift += 7) {
+            var b = in.get();
+            i |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Malformed variable-length integer");
+    }
+
+    /**
+     * Writes the records, which must be ordered by their key, into a new segment.
+     * The file only appears once it is complete.
+     */
+    public static VersionSegment write(File f, Iterator<Record> records, int[] indices) throws IOException {
+        var part = File.createTempFile(f.getName() + ".", ".part", f.getParentFile());
+        try {
+            try ( //
+                    var fos = new FileOutputStream(part); //
+                    var out = new DataOutputStream(new BufferedOutputStream(fos))) {
+                writeRecords(out, records, indices);
+            }
+            Files.move(part.toPath(), f.toPath(), ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(part.toPath());
+        }
+        return open(f);
+    }
+
+    private static void writeRecords(DataOutputStream out, Iterator<Record> records, int[] indices) throws IOException {
+        var offsets = new int[1024];
+        var keyCount = 0;
+        var entryCount = 0L;
+        while (records.hasNext()) {
+            var r = records.next();
+            if (out.size() > MAX_SIZE) {
+                throw new IOException("Version segment exceeds the maximum size");
+            }
+            if (keyCount == offsets.length) {
+                offsets = Arrays.copyOf(offsets, 2 * keyCount);
+            }
+            offsets[keyCount++] = out.size();
+            VarInts.writeVarInt(out, r.key.length);
+            out.write(r.key);
+            VarInts.writeVarInt(out, r.entries.size());
+            for (var e : r.entries) {
+                writeString(out, e.version);
+                writeString(out, e.packaging);
+                out.writeLong(e.releaseDate);
+                VarInts.writeVarInt(out, e.index);
+            }
+            entryCount += r.entries.size();
+        }
+
+        long offsetsStart = out.size();
+        for (var i = 0; i < keyCount; i++) {
+            out.writeInt(offsets[i]);
+        }
+        long indicesStart = out.size();
+        for (var idx : indices) {
+            out.writeInt(idx);
+        }
+        out.writeLong(offsetsStart);
+        out.writeInt(keyCount);
+        out.writeLong(indicesStart);
+        out.writeInt(indices.length);
+        out.writeLong(entryCount);
+        out.writeInt(VERSION);
+        out.writeInt(MAGIC);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        var bytes = s.getBytes(UTF_8);
+        VarInts.writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    public static class Record {
+
+        public final byte[] key;
+        public final List<VersionEntry> entries;
+
+        public Record(byte[] key, List<VersionEntry> entries) {
+            this.key = key;
+            this.entries = entries;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.junit.jupiter.api.Test;
+
+import dev.c0ps.commons.ResourceUtils;
+
+public class ArtifactFilterTest {
+
+    private static final Artifact A = new Artifact("org.example", "a", "1", "jar").setReleaseDate(100);
+
+    @Test
+    public void noneMatchesEverything() {
+        assertTrue(ArtifactFilter.NONE.isEmpty());
+        assertTrue(ArtifactFilter.NONE.matches(A));
+        assertTrue(ArtifactFilter.NONE.matches(new Document()));
+    }
+
+    @Test
+    public void emptyCollectionsDoNotFilter() {
+        var sut = new ArtifactFilter(List.of(), List.of(), null, null);
+        assertTrue(sut.isEmpty());
+    }
+
+    @Test
+    public void packaging() {
+        assertTrue(new ArtifactFilter(List.of("aar", "jar"), null, null, null).matches(A));
+        assertFalse(new ArtifactFilter(List.of("pom"), null, null, null).matches(A));
+    }
+
+    @Test
+    public void groupPrefix() {
+        assertTrue(new ArtifactFilter(null, List.of("com.", "org.ex"), null, null).matches(A));
+        assertFalse(new ArtifactFilter(null, List.of("com."), null, null).matches(A));
+    }
+
+    @Test
+    public void releaseDateBoundsAreExclusive() {
+        assertTrue(new ArtifactFilter(null, null, 99L, 101L).matches(A));
+        assertFalse(new ArtifactFilter(null, null, 100L, null).matches(A));
+        assertFalse(new ArtifactFilter(null, null, null, 100L).matches(A));
+    }
+
+    @Test
+    public void allRestrictionsMustMatch() {
+        assertFalse(new ArtifactFilter(List.of("jar"), List.of("org."), 200L, null).matches(A));
+    }
+
+    @Test
+    public void documentsUseShortenedPackaging() {
+        var doc = doc("org.example", "jar.sha256", "100");
+        assertTrue(new ArtifactFilter(List.of("jar"), null, null, null).matches(doc));
+    }
+
+    @Test
+    public void documentsWithMissingOrBrokenFieldsDoNotMatch() {
+        assertFalse(new ArtifactFilter(null, null, 1L, null).matches(doc("g", "jar", "abc")));
+        assertFalse(new ArtifactFilter(List.of("jar"), null, null, null).matches(new Document()));
+        assertFalse(new ArtifactFilter(null, List.of("g"), null, null).matches(new Document()));
+    }
+
+    @Test
+    public void filteringWhileReadingEqualsFilteringAfterwards() {
+        var f = ResourceUtils.getTestResource("some-index.gz");
+        var reader = new IndexFileReader();
+        var all = reader.readIndexFile(f);
+        var dates = all.stream().mapToLong(a -> a.releaseDate).sorted().toArray();
+
+        var filters = List.of( //
+                new ArtifactFilter(List.of("jar"), null, null, null), //
+                new ArtifactFilter(List.of("pom", "jar"), List.of("org.", "com.github"), null, null), //
+                new ArtifactFilter(null, null, dates[dates.length / 4], dates[3 * dates.length / 4]));
+        for (var filter : filters) {
+            var expected = all.stream().filter(filter::matches).collect(Collectors.toSet());
+            var actual = new HashSet<Artifact>();
+            reader.readIndexFile(f, filter, actual::add);
+            assertFalse(expected.isEmpty(), filter.toString());
+            assertEquals(expected, actual, filter.toString());
+        }
+    }
+
+    private static Document doc(String g, String e, String m) {
+        var doc = new Document();
+        for (var entry : Set.of(new String[] { "g", g }, new String[] { "e", e }, new String[] { "m", m })) {
+            doc.add(new StringField(entry[0], entry[1], Field.Store.YES));
+        }
+        return doc;
+    }
+}
\ No newline at end of file
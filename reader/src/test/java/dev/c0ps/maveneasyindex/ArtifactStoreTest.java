@@ -0,0 +1,104 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dev.c0ps.commons.ResourceUtils;
+
+public class ArtifactStoreTest {
+
+    @TempDir
+    private File dirTmp;
+    private File indexFile;
+    private ArtifactStore sut;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        indexFile = new File(dirTmp, "maven-crawler-1.tmp");
+        Files.writeString(indexFile.toPath(), "some index content", UTF_8);
+        sut = new ArtifactStore();
+    }
+
+    @Test
+    public void missingStore() {
+        assertNull(sut.read(indexFile));
+    }
+
+    @Test
+    public void roundtrip() {
+        var expected = Set.of( //
+                new Artifact("g", "a", "1.0", "jar").setReleaseDate(123), //
+                new Artifact("g", "a", "1.1", "jar").setReleaseDate(234), //
+                new Artifact("g2", "b", "1.0", "pom").setReleaseDate(345).setRepository("http://some.repo/"), //
+                new Artifact("ü:@", "ä", "ö", "ß"));
+        sut.write(indexFile, expected);
+
+        assertEquals(Set.of("maven-crawler-1.tmp", "maven-crawler-1.artifacts"), Set.of(dirTmp.list()));
+        assertEquals(expected, sut.read(indexFile));
+    }
+
+    @Test
+    public void roundtripRealIndex() throws IOException {
+        var f = new File(dirTmp, "maven-crawler-717.tmp");
+        Files.copy(ResourceUtils.getTestResource("index-717.gz").toPath(), f.toPath());
+        var expected = new IndexFileReader().readIndexFile(f);
+
+        sut.write(f, expected);
+        var storeSize = new File(dirTmp, "maven-crawler-717.artifacts").length();
+        assertTrue(storeSize < f.length());
+        assertEquals(expected, sut.read(f));
+    }
+
+    @Test
+    public void storeIsIgnoredWhenIndexFileChanges() throws IOException {
+        sut.write(indexFile, Set.of(new Artifact("g", "a", "1.0", "jar")));
+        Files.writeString(indexFile.toPath(), "other index content", UTF_8);
+        assertNull(sut.read(indexFile));
+    }
+
+    @Test
+    public void storeIsIgnoredForUnknownVersion() throws IOException {
+        sut.write(indexFile, Set.of(new Artifact("g", "a", "1.0", "jar")));
+        try (var raf = new RandomAccessFile(new File(dirTmp, "maven-crawler-1.artifacts"), "rw")) {
+            raf.seek(4);
+            raf.writeInt(12345);
+        }
+        assertNull(sut.read(indexFile));
+    }
+
+    @Test
+    public void truncatedStoreIsIgnored() throws IOException {
+        sut.write(indexFile, Set.of(new Artifact("g", "a", "1.0", "jar")));
+        try (var raf = new RandomAccessFile(new File(dirTmp, "maven-crawler-1.artifacts"), "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+        assertNull(sut.read(indexFile));
+    }
+}
\ No newline at end of file
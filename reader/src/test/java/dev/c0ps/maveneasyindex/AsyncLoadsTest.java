@@ -0,0 +1,187 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import dev.c0ps.maveneasyindex.BoundedCache.EvictionPolicy;
+
+public class AsyncLoadsTest {
+
+    private ExecutorService executor;
+    private AsyncLoads sut;
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch interrupted = new CountDownLatch(1);
+    private final AtomicInteger numLoads = new AtomicInteger();
+
+    @BeforeEach
+    public void setup() {
+        executor = Executors.newCachedThreadPool();
+        sut = new AsyncLoads(executor);
+    }
+
+    @AfterEach
+    public void teardown() {
+        executor.shutdownNow();
+    }
+
+    private String blockingLoad() {
+        numLoads.incrementAndGet();
+        started.countDown();
+        try {
+            release.await();
+            return "x";
+        } catch (InterruptedException e) {
+            interrupted.countDown();
+            throw new CancellationException();
+        }
+    }
+
+    @Test
+    public void returnsResult() throws Exception {
+        var w = sut.submit("a", () -> "x");
+        assertEquals("x", w.getResult().toCompletableFuture().get(5, SECONDS));
+    }
+
+    @Test
+    public void concurrentRequestsShareLoad() throws Exception {
+        var w1 = sut.submit("a", this::blockingLoad);
+        var w2 = sut.submit("a", this::blockingLoad);
+        assertTrue(started.await(5, SECONDS));
+        assertEquals(1, sut.size());
+        release.countDown();
+        assertEquals("x", w1.getResult().toCompletableFuture().get(5, SECONDS));
+        assertEquals("x", w2.getResult().toCompletableFuture().get(5, SECONDS));
+        assertEquals(1, numLoads.get());
+    }
+
+    @Test
+    public void differentKeysAreLoadedSeparately() throws Exception {
+        var w1 = sut.submit("a", () -> "x");
+        var w2 = sut.submit("b", () -> "y");
+        assertEquals("x", w1.getResult().toCompletableFuture().get(5, SECONDS));
+        assertEquals("y", w2.getResult().toCompletableFuture().get(5, SECONDS));
+    }
+
+    @Test
+    public void failuresArePropagated() {
+        var w = sut.submit("a", () -> {
+            throw new IllegalStateException();
+        });
+        var e = assertThrows(ExecutionException.class, () -> w.getResult().toCompletableFuture().get(5, SECONDS));
+        assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+
+    @Test
+    public void runningLoadIsNotInterruptedWhenLastWaiterIsReleased() throws Exception {
+        var w1 = sut.submit("a", this::blockingLoad);
+        var w2 = sut.submit("a", this::blockingLoad);
+        assertTrue(started.await(5, SECONDS));
+
+        w1.release();
+        assertFalse(w2.getResult().toCompletableFuture().isDone());
+
+        w2.release();
+        assertTrue(w2.getResult().toCompletableFuture().isCompletedExceptionally());
+        assertEquals(0, sut.size());
+        assertFalse(interrupted.await(100, MILLISECONDS));
+        release.countDown();
+    }
+
+    @Test
+    public void pendingLoadIsSkippedWhenLastWaiterIsReleased() throws Exception {
+        executor.shutdownNow();
+        executor = Executors.newSingleThreadExecutor();
+        sut = new AsyncLoads(executor);
+        var w1 = sut.submit("a", this::blockingLoad);
+        assertTrue(started.await(5, SECONDS));
+        var numSkipped = new AtomicInteger();
+        var w2 = sut.submit("b", numSkipped::incrementAndGet);
+        w2.release();
+        release.countDown();
+
+        assertEquals("x", w1.getResult().toCompletableFuture().get(5, SECONDS));
+        var w3 = sut.submit("c", () -> "y");
+        assertEquals("y", w3.getResult().toCompletableFuture().get(5, SECONDS));
+        assertEquals(0, numSkipped.get());
+    }
+
+    @Test
+    public void disconnectDoesNotFailSharedLoadOfOtherKey() throws Exception {
+        // like "artifacts/1" and "response/1/..." that both load index 1 through the cache
+        var cache = new BoundedCache<Integer, String>(1000, v -> 1, EvictionPolicy.LRU, 1, MINUTES);
+        var w1 = sut.submit("artifacts/1", () -> cache.getOrLoad(1, n -> blockingLoad()));
+        assertTrue(started.await(5, SECONDS));
+        var w2 = sut.submit("response/1", () -> cache.getOrLoad(1, n -> blockingLoad()));
+
+        w1.release();
+        release.countDown();
+
+        assertEquals("x", w2.getResult().toCompletableFuture().get(5, SECONDS));
+        assertEquals(1, interrupted.getCount());
+        assertEquals(1, numLoads.get());
+    }
+
+    @Test
+    public void repeatedReleaseCountsOnce() throws Exception {
+        var w1 = sut.submit("a", this::blockingLoad);
+        var w2 = sut.submit("a", this::blockingLoad);
+        assertTrue(started.await(5, SECONDS));
+
+        w1.release();
+        w1.release();
+        assertFalse(w2.getResult().toCompletableFuture().isDone());
+        release.countDown();
+        assertEquals("x", w2.getResult().toCompletableFuture().get(5, SECONDS));
+    }
+
+    @Test
+    public void releasingAfterCompletionHasNoEffect() throws Exception {
+        var w = sut.submit("a", () -> "x");
+        assertEquals("x", w.getResult().toCompletableFuture().get(5, SECONDS));
+        w.release();
+        assertFalse(w.getResult().toCompletableFuture().isCompletedExceptionally());
+    }
+
+    @Test
+    public void newRequestStartsNewLoadAfterCancellation() throws Exception {
+        var w1 = sut.submit("a", this::blockingLoad);
+        assertTrue(started.await(5, SECONDS));
+        w1.release();
+
+        var w2 = sut.submit("a", () -> "y");
+        assertEquals("y", w2.getResult().toCompletableFuture().get(5, SECONDS));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import static dev.c0ps.maveneasyindex.BoundedCache.EvictionPolicy.LFU;
+import static dev.c0ps.maveneasyindex.BoundedCache.EvictionPolicy.LRU;
+import static dev.c0ps.maveneasyindex.BoundedCache.EvictionPolicy.TTL;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import dev.c0ps.maveneasyindex.BoundedCache.EvictionPolicy;
+
+public class BoundedCacheTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private BoundedCache<Integer, String> cache(long maxWeight, EvictionPolicy policy) {
+        return new BoundedCache<>(maxWeight, String::length, policy, 100, NANOSECONDS, clock::get);
+    }
+
+    @Test
+    public void missOnEmptyCache() {
+        var sut = cache(10, LRU);
+        assertNull(sut.get(1));
+        assertEquals(0, sut.getHitCount());
+        assertEquals(1, sut.getMissCount());
+    }
+
+    @Test
+    public void hitAfterPut() {
+        var sut = cache(10, LRU);
+        sut.put(1, "abc");
+        assertEquals("abc", sut.get(1));
+        assertEquals(1, sut.getHitCount());
+        assertEquals(0, sut.getMissCount());
+        assertEquals(3, sut.getWeight());
+    }
+
+    @Test
+    public void containsDoesNotCount() {
+        var sut = cache(10, LRU);
+        sut.put(1, "abc");
+        assertTrue(sut.contains(1));
+        assertFalse(sut.contains(2));
+        assertEquals(0, sut.getHitCount());
+        assertEquals(0, sut.getMissCount());
+    }
+
+    @Test
+    public void replacingUpdatesWeight() {
+        var sut = cache(10, LRU);
+        sut.put(1, "abc");
+        sut.put(1, "abcde");
+        assertEquals(1, sut.size());
+        assertEquals(5, sut.getWeight());
+        assertEquals(0, sut.getEvictionCount());
+    }
+
+    @Test
+    public void oversizedValuesAreNotCached() {
+        var sut = cache(3, LRU);
+        sut.put(1, "abcd");
+        assertEquals(0, sut.size());
+        assertEquals(0, sut.getWeight());
+        assertNull(sut.get(1));
+    }
+
+    @Test
+    public void lruEvictsLeastRecentlyUsed() {
+        var sut = cache(6, LRU);
+        sut.put(1, "aa");
+        sut.put(2, "bb");
+        sut.put(3, "cc");
+        sut.get(1);
+        sut.put(4, "dd");
+
+        assertNull(sut.get(2));
+        assertEquals("aa", sut.get(1));
+        assertEquals("cc", sut.get(3));
+        assertEquals("dd", sut.get(4));
+        assertEquals(1, sut.getEvictionCount());
+        assertEquals(6, sut.getWeight());
+    }
+
+    @Test
+    public void lfuEvictsLeastFrequentlyUsed() {
+        var sut = cache(6, LFU);
+        sut.put(1, "aa");
+        sut.put(2, "bb");
+        sut.put(3, "cc");
+        sut.get(1);
+        sut.get(1);
+        sut.get(2);
+        sut.get(2);
+        sut.get(3);
+        sut.put(4, "dd");
+
+        assertNull(sut.get(3));
+        assertEquals("aa", sut.get(1));
+        assertEquals("bb", sut.get(2));
+        assertEquals("dd", sut.get(4));
+        assertEquals(1, sut.getEvictionCount());
+    }
+
+    @Test
+    public void ttlExpiresEntries() {
+        var sut = cache(10, TTL);
+        sut.put(1, "aa");
+        clock.set(100);
+        assertEquals("aa", sut.get(1));
+        clock.set(101);
+        assertNull(sut.get(1));
+        assertEquals(0, sut.size());
+        assertEquals(0, sut.getWeight());
+        assertEquals(1, sut.getEvictionCount());
+    }
+
+    @Test
+    public void ttlEvictsOldestWhenFull() {
+        var sut = cache(4, TTL);
+        sut.put(1, "aa");
+        clock.set(1);
+        sut.put(2, "bb");
+        sut.get(1);
+        clock.set(2);
+        sut.put(3, "cc");
+
+        assertNull(sut.get(1));
+        assertEquals("bb", sut.get(2));
+        assertEquals("cc", sut.get(3));
+    }
+
+    @Test
+    public void concurrentPutsStayWithinBounds() throws InterruptedException {
+        var sut = cache(100, LRU);
+        var threads = new ArrayList<Thread>();
+        for (var t = 0; t < 8; t++) {
+            var offset = t * 1000;
+            threads.add(new Thread(() -> {
+                for (var i = 0; i < 1000; i++) {
+                    sut.put(offset + i, "0123456789");
+                    sut.get(offset + i - 1);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (var t : threads) {
+            t.join();
+        }
+        assertEquals(10, sut.size());
+        assertEquals(100, sut.getWeight());
+        assertEquals(8000 - 10, sut.getEvictionCount());
+    }
+
+    @Test
+    public void getOrLoadCachesLoadedValue() {
+        var sut = cache(10, LRU);
+        var calls = new AtomicInteger();
+        assertEquals("1", sut.getOrLoad(1, k -> "" + calls.incrementAndGet()));
+        assertEquals("1", sut.getOrLoad(1, k -> "" + calls.incrementAndGet()));
+        assertEquals(1, calls.get());
+        assertEquals(1, sut.getHitCount());
+    }
+
+    @Test
+    public void getOrLoadPropagatesFailures() {
+        var sut = cache(10, LRU);
+        var e = new IllegalStateException();
+        assertSame(e, assertThrows(IllegalStateException.class, () -> sut.getOrLoad(1, k -> {
+            throw e;
+        })));
+        assertEquals("x", sut.getOrLoad(1, k -> "x"));
+    }
+
+    @Test
+    public void concurrentGetOrLoadLoadsOnce() throws InterruptedException {
+        var sut = cache(10, LRU);
+        var calls = new AtomicInteger();
+        var isLoading = new CountDownLatch(1);
+        var mayFinish = new CountDownLatch(1);
+        var results = ConcurrentHashMap.<String>newKeySet();
+
+        var loader = new Thread(() -> results.add(sut.getOrLoad(1, k -> {
+            calls.incrementAndGet();
+            isLoading.countDown();
+            await(mayFinish);
+            return "x";
+        })));
+        loader.start();
+        await(isLoading);
+
+        var waiters = new ArrayList<Thread>();
+        for (var i = 0; i < 4; i++) {
+            waiters.add(new Thread(() -> results.add(sut.getOrLoad(1, k -> {
+                calls.incrementAndGet();
+                return "y";
+            }))));
+        }
+        waiters.forEach(Thread::start);
+        mayFinish.countDown();
+        loader.join();
+        for (var t : waiters) {
+            t.join();
+        }
+
+        assertEquals(1, calls.get());
+        assertEquals(1, results.size());
+        assertEquals("x", results.iterator().next());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import dev.c0ps.commons.ResourceUtils;
+
+public class CompactArtifactSetTest {
+
+    private static final Artifact A1 = new Artifact("g", "a", "1.0", "jar").setReleaseDate(123);
+    private static final Artifact A2 = new Artifact("g", "a", "1.1", "jar").setReleaseDate(234);
+    private static final Artifact B1 = new Artifact("g2", "b", "1.0", "pom").setReleaseDate(345).setRepository("http://some.repo/");
+
+    @Test
+    public void isEqualToOriginalSet() {
+        var expected = Set.of(A1, A2, B1);
+        var actual = CompactArtifactSet.of(expected);
+        assertEquals(expected, actual);
+        assertEquals(actual, expected);
+        assertEquals(expected.hashCode(), actual.hashCode());
+        assertEquals(3, actual.size());
+    }
+
+    @Test
+    public void containsWorks() {
+        var sut = CompactArtifactSet.of(Set.of(A1, B1));
+        assertTrue(sut.contains(A1));
+        assertTrue(sut.contains(B1.clone()));
+        assertFalse(sut.contains(A2));
+        assertFalse(sut.contains(A1.clone().setReleaseDate(1)));
+        assertFalse(sut.contains(B1.clone().setRepository(Artifact.CENTRAL)));
+        assertFalse(sut.contains(new Artifact()));
+        assertFalse(sut.contains("g:a:1.0:jar:123"));
+    }
+
+    @Test
+    public void duplicatesAreRemoved() {
+        var sut = CompactArtifactSet.of(List.of(A1, A1.clone(), A2));
+        assertEquals(2, sut.size());
+    }
+
+    @Test
+    public void iterationIsSortedByCoordinate() {
+        var sut = CompactArtifactSet.of(Set.of(B1, A2, A1));
+        var actual = new ArrayList<>(sut);
+        assertEquals(List.of(A1, A2, B1), actual);
+        assertEquals(A2, sut.get(1));
+    }
+
+    @Test
+    public void orderDoesNotDependOnInput() {
+        var artifacts = new ArrayList<>(new IndexFileReader().readIndexFile(ResourceUtils.getTestResource("some-index.gz")));
+        var a = CompactArtifactSet.of(new HashSet<>(artifacts));
+        Collections.reverse(artifacts);
+        var b = CompactArtifactSet.of(artifacts);
+        assertEquals(a.size(), b.size());
+        for (var i = 0; i < a.size(); i++) {
+            assertEquals(a.get(i), b.get(i));
+        }
+    }
+
+    @Test
+    public void returnedArtifactsAreCopies() {
+        var sut = CompactArtifactSet.of(Set.of(A1));
+        var a = sut.iterator().next();
+        assertNotSame(a, sut.iterator().next());
+        a.version = "2.0";
+        assertTrue(sut.contains(A1));
+    }
+
+    @Test
+    public void isImmutable() {
+        var sut = CompactArtifactSet.of(Set.of(A1));
+        assertThrows(UnsupportedOperationException.class, () -> sut.add(A2));
+        assertThrows(UnsupportedOperationException.class, () -> sut.iterator().remove());
+    }
+
+    @Test
+    public void isIdempotent() {
+        var sut = CompactArtifactSet.of(Set.of(A1));
+        assertSame(sut, CompactArtifactSet.of(sut));
+    }
+
+    @Test
+    public void stringsAreShared() {
+        var sut = CompactArtifactSet.of(Set.of(A1, A2));
+        assertSame(sut.get(0).groupId, sut.get(1).groupId);
+        assertSame(sut.get(0).packaging, sut.get(1).packaging);
+    }
+
+    @Test
+    public void realIndexIsSmallerThanHashSet() {
+        var artifacts = new IndexFileReader().readIndexFile(ResourceUtils.getTestResource("index-717.gz"));
+        var sut = CompactArtifactSet.of(artifacts);
+        assertEquals(artifacts, new HashSet<>(sut));
+        // the previous estimate for a hash set was 300 bytes per artifact
+        assertTrue(sut.estimateSize() < artifacts.size() * 300L / 2);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import static dev.c0ps.maveneasyindex.DownloadLimiter.Priority.BULK;
+import static dev.c0ps.maveneasyindex.DownloadLimiter.Priority.INTERACTIVE;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+
+import dev.c0ps.maveneasyindex.DownloadLimiter.Ticket;
+
+public class DownloadLimiterTest {
+
+    private final List<String> order = new CopyOnWriteArrayList<>();
+
+    @Test
+    public void freeSlotsAreGrantedRightAway() throws InterruptedIOException {
+        var sut = new DownloadLimiter(2, 0);
+        sut.acquire(BULK);
+        sut.acquire(INTERACTIVE);
+        assertEquals(2, sut.getActive());
+        assertEquals(0, sut.getQueueDepth(BULK));
+        assertEquals(0, sut.getQueueDepth(INTERACTIVE));
+    }
+
+    @Test
+    public void closingFreesSlot() throws InterruptedIOException {
+        var sut = new DownloadLimiter(1, 0);
+        var t = sut.acquire(BULK);
+        assertEquals(1, sut.getActive());
+        t.close();
+        assertEquals(0, sut.getActive());
+        sut.acquire(BULK);
+        assertEquals(1, sut.getActive());
+    }
+
+    @Test
+    public void repeatedCloseIsIgnored() throws InterruptedIOException {
+        var sut = new DownloadLimiter(2, 0);
+        var t = sut.acquire(BULK);
+        sut.acquire(BULK);
+        t.close();
+        t.close();
+        assertEquals(1, sut.getActive());
+    }
+
+    @Test
+    public void downloadsWaitForFreeSlot() throws Exception {
+        var sut = new DownloadLimiter(1, 0);
+        var first = sut.acquire(BULK);
+        var waiter = awaitInThread(sut.enqueue(BULK), "second");
+        Thread.sleep(50);
+        assertTrue(waiter.isAlive());
+        assertEquals(1, sut.getQueueDepth(BULK));
+
+        first.close();
+        waiter.join(5000);
+        assertEquals(List.of("second"), order);
+        assertEquals(0, sut.getActive());
+    }
+
+    @Test
+    public void interactiveBeforeBulkAndFifoWithinPriority() throws Exception {
+        var sut = new DownloadLimiter(1, 0);
+        var first = sut.acquire(BULK);
+        var threads = List.of( //
+                awaitInThread(sut.enqueue(BULK), "bulk-1"), //
+                awaitInThread(sut.enqueue(INTERACTIVE), "interactive-1"), //
+                awaitInThread(sut.enqueue(BULK), "bulk-2"), //
+                awaitInThread(sut.enqueue(INTERACTIVE), "interactive-2"));
+        first.close();
+        for (var t : threads) {
+            t.join(5000);
+        }
+        assertEquals(List.of("interactive-1", "interactive-2", "bulk-1", "bulk-2"), order);
+    }
+
+    @Test
+    public void promotedBulkIsServedAsInteractive() throws Exception {
+        var sut = new DownloadLimiter(1, 0);
+        var first = sut.acquire(BULK);
+        var interactive = sut.enqueue(INTERACTIVE);
+        var bulk = sut.enqueue(BULK);
+        bulk.promote();
+        assertEquals(2, sut.getQueueDepth(INTERACTIVE));
+        assertEquals(0, sut.getQueueDepth(BULK));
+
+        var threads = List.of(awaitInThread(bulk, "promoted"), awaitInThread(interactive, "interactive"));
+        first.close();
+        for (var t : threads) {
+            t.join(5000);
+        }
+        assertEquals(List.of("interactive", "promoted"), order);
+    }
+
+    @Test
+    public void closedTicketsLeaveTheQueue() throws Exception {
+        var sut = new DownloadLimiter(1, 0);
+        var first = sut.acquire(BULK);
+        var abandoned = sut.enqueue(INTERACTIVE);
+        var waiter = awaitInThread(sut.enqueue(BULK), "bulk");
+        abandoned.close();
+        assertEquals(0, sut.getQueueDepth(INTERACTIVE));
+        first.close();
+        waiter.join(5000);
+        assertEquals(List.of("bulk"), order);
+    }
+
+    @Test
+    public void interruptedWaitLeavesTheQueue() throws Exception {
+        var sut = new DownloadLimiter(1, 0);
+        sut.acquire(BULK);
+        var failed = new CountDownLatch(1);
+        var ticket = sut.enqueue(BULK);
+        var t = new Thread(() -> {
+            try {
+                ticket.await();
+            } catch (InterruptedIOException e) {
+                failed.countDown();
+            }
+        });
+        t.start();
+        t.interrupt();
+        assertTrue(failed.await(5, SECONDS));
+        assertEquals(0, sut.getQueueDepth(BULK));
+        assertEquals(1, sut.getActive());
+    }
+
+    @Test
+    public void awaitingClosedTicketFails() {
+        var sut = new DownloadLimiter(1, 0);
+        var t = sut.enqueue(BULK);
+        t.close();
+        assertThrows(IllegalStateException.class, t::await);
+    }
+
+    @Test
+    public void unlimitedRateDoesNotBlock() throws InterruptedIOException {
+        var sut = new DownloadLimiter(1, 0);
+        var start = System.nanoTime();
+        sut.throttle(Long.MAX_VALUE / 1_000_000_000L);
+        assertTrue(System.nanoTime() - start < SECONDS.toNanos(1));
+    }
+
+    @Test
+    public void rateIsLimited() throws InterruptedIOException {
+        var sut = new DownloadLimiter(1, 1_000_000);
+        var start = System.nanoTime();
+        for (var i = 0; i < 30; i++) {
+            sut.throttle(10_000);
+        }
+        // 300 KB at 1 MB/s take 300 ms, minus the initial burst of 100 ms
+        var ms = (System.nanoTime() - start) / 1_000_000;
+        assertTrue(ms >= 180, "took " + ms + " ms");
+        assertFalse(ms > 5000, "took " + ms + " ms");
+    }
+
+    @Test
+    public void metricsAreOnlyExposedForRegisteredInstance() throws InterruptedIOException {
+        var metrics = new Metrics();
+        var sut = new DownloadLimiter(2, 0);
+        sut.registerMetrics(metrics);
+        sut.acquire(BULK);
+
+        // e.g., a library instance, which must not replace the gauges of the server
+        var other = new DownloadLimiter(2, 0);
+        other.acquire(BULK);
+        other.acquire(INTERACTIVE);
+        other.enqueue(BULK);
+
+        var scrape = metrics.scrape();
+        assertTrue(scrape.contains("maven_easy_index_downloads_active 1\n"), scrape);
+        assertTrue(scrape.contains("maven_easy_index_download_queue_depth{priority=\"bulk\"} 0\n"), scrape);
+        assertTrue(scrape.contains("maven_easy_index_download_queue_wait_seconds_count{priority=\"bulk\"} 1\n"), scrape);
+        assertTrue(scrape.contains("maven_easy_index_download_queue_wait_seconds_count{priority=\"interactive\"} 0\n"), scrape);
+        var global = Metrics.DEFAULT.scrape();
+        assertFalse(global.contains("maven_easy_index_downloads_active"), global);
+        assertFalse(global.contains("maven_easy_index_download_queue"), global);
+    }
+
+    private Thread awaitInThread(Ticket ticket, String name) {
+        var t = new Thread(() -> {
+            try (ticket) {
+                ticket.await();
+                order.add(name);
+            } catch (InterruptedIOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        t.start();
+        return t;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dev.c0ps.commons.ResourceUtils;
+import dev.c0ps.maveneasyindex.FullIndex.Page;
+import dev.c0ps.maveneasyindex.FullIndex.State;
+
+public class FullIndexTest {
+
+    private static final int NUM_PARTITIONS = 4;
+
+    @TempDir
+    private File dirTmp;
+
+    private File indexFile;
+    private Set<Artifact> expected;
+
+    @BeforeEach
+    public void setup() {
+        indexFile = ResourceUtils.getTestResource("index-717.gz");
+        expected = new IndexFileReader().readIndexFile(indexFile);
+    }
+
+    private FullIndex sut(File index) throws IOException {
+        return new FullIndex(dirTmp.getAbsolutePath(), true, index.toURI().toURL().toString(), NUM_PARTITIONS, new HttpDownloader(), new DownloadLimiter(),
+                new IndexFileReader());
+    }
+
+    @Test
+    public void ingestionDoesNotPoolStrings() throws IOException {
+        var pools = new ArrayList<StringPool>();
+        var reader = new IndexFileReader() {
+            @Override
+            protected void readDocuments(File f, ArtifactFilter filter, StringPool pool, Consumer<Artifact> consumer, long[] counts) throws IOException {
+                pools.add(pool);
+                super.readDocuments(f, filter, pool, consumer, counts);
+            }
+        };
+        var sut = new FullIndex(dirTmp.getAbsolutePath(), true, indexFile.toURI().toURL().toString(), NUM_PARTITIONS, new HttpDownloader(),
+                new DownloadLimiter(), reader);
+        sut.ingest();
+        assertEquals(State.COMPLETE, sut.getState());
+        assertEquals(Collections.singletonList(null), pools);
+    }
+
+    @Test
+    public void missingBeforeIngestion() throws IOException {
+        var sut = sut(indexFile);
+        assertEquals(State.MISSING, sut.getState());
+        assertThrows(IllegalStateException.class, () -> sut.next(Page.FIRST, 10));
+    }
+
+    @Test
+    public void ingestionContainsAllUniqueArtifacts() throws IOException {
+        var sut = sut(indexFile);
+        sut.ingest();
+        assertEquals(State.COMPLETE, sut.getState());
+        assertEquals(expected.size(), sut.getNumArtifacts());
+
+        var actual = new ArrayList<Artifact>();
+        sut.read(Page.FIRST, null, actual::add);
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected, new HashSet<>(actual));
+    }
+
+    @Test
+    public void spillFilesAreRemoved() throws IOException {
+        sut(indexFile).ingest();
+        var names = new File(dirTmp, "full").list();
+        for (var name : names) {
+            assertFalse(name.endsWith(".spill"), name);
+            assertFalse(name.endsWith(".part"), name);
+        }
+        assertTrue(Set.of(names).contains("part-0003.col"));
+    }
+
+    @Test
+    public void pagesReturnEveryArtifactOnce() throws IOException {
+        var sut = sut(indexFile);
+        sut.ingest();
+        var actual = new ArrayList<Artifact>();
+        var page = Page.FIRST;
+        var numPages = 0;
+        while (page != null) {
+            var next = sut.next(page, 1000);
+            var size = actual.size();
+            sut.read(page, next, actual::add);
+            assertTrue(actual.size() - size <= 1000);
+            page = next == null ? null : Page.parse(next.toString());
+            numPages++;
+        }
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected, new HashSet<>(actual));
+        assertEquals((expected.size() + 999) / 1000, numPages);
+    }
+
+    @Test
+    public void lastPageHasNoNext() throws IOException {
+        var sut = sut(indexFile);
+        sut.ingest();
+        assertNull(sut.next(Page.FIRST, expected.size()));
+        assertNull(sut.next(Page.FIRST, Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void versionsOfAnArtifactShareAPartition() {
+        var a = new Artifact("g", "a", "1", "jar");
+        var b = new Artifact("g", "a", "2", "pom");
+        assertEquals(FullIndex.partitionOf(a, 256), FullIndex.partitionOf(b, 256));
+    }
+
+    @Test
+    public void ingestionIsPersisted() throws IOException {
+        sut(indexFile).ingest();
+        var other = sut(indexFile);
+        assertEquals(State.COMPLETE, other.getState());
+        assertEquals(expected.size(), other.getNumArtifacts());
+        var actual = new HashSet<Artifact>();
+        other.read(Page.FIRST, null, actual::add);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void incompleteIngestionIsRepeated() throws IOException {
+        var dir = new File(dirTmp, "full");
+        dir.mkdirs();
+        Files.writeString(new File(dir, "part-0000.spill").toPath(), "leftover");
+        Files.writeString(new File(dir, "part-0001.col").toPath(), "leftover");
+
+        var sut = sut(indexFile);
+        assertEquals(State.MISSING, sut.getState());
+        sut.ingest();
+        assertEquals(State.COMPLETE, sut.getState());
+        assertEquals(expected.size(), sut.getNumArtifacts());
+    }
+
+    @Test
+    public void failedDownloadIsReported() throws IOException {
+        var sut = sut(new File(dirTmp, "missing.gz"));
+        sut.ingest();
+        assertEquals(State.FAILED, sut.getState());
+    }
+
+    @Test
+    public void disabledIngestionDoesNotStart() throws IOException {
+        var sut = new FullIndex(dirTmp.getAbsolutePath(), false, indexFile.toURI().toURL().toString(), NUM_PARTITIONS, new HttpDownloader(),
+                new DownloadLimiter(), new IndexFileReader());
+        sut.start();
+        assertEquals(State.MISSING, sut.getState());
+    }
+
+    @Test
+    public void pagesCanBeParsed() {
+        assertEquals("3.17", Page.parse("3.17").toString());
+        assertThrows(IllegalArgumentException.class, () -> Page.parse("3"));
+        assertThrows(IllegalArgumentException.class, () -> Page.parse("3.x"));
+        assertThrows(IllegalArgumentException.class, () -> Page.parse("-1.0"));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,353 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import dev.c0ps.commons.ResourceUtils;
+
+public class HttpDownloaderTest {
+
+    private static final String PATH = "/index-1.gz";
+
+    @TempDir
+    private File dirTmp;
+
+    private StandInRepository repo;
+    private byte[] content;
+    private File to;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        content = Files.readAllBytes(ResourceUtils.getTestResource("some-index.gz").toPath());
+        repo = new StandInRepository();
+        repo.files.put(PATH, content);
+        repo.files.put(PATH + ".sha1", (hex(content, "SHA-1") + "  index-1.gz\n").getBytes(UTF_8));
+        repo.files.put(PATH + ".md5", hex(content, "MD5").getBytes(UTF_8));
+        to = new File(dirTmp, "index-1.gz.part");
+    }
+
+    @AfterEach
+    public void teardown() {
+        repo.stop();
+    }
+
+    private static HttpDownloader sut(int retries, boolean verify) {
+        return new HttpDownloader(retries, 0, verify);
+    }
+
+    @Test
+    public void download() throws IOException {
+        sut(0, false).download(repo.url(PATH), to);
+        assertArrayEquals(content, Files.readAllBytes(to.toPath()));
+        assertEquals(List.of("GET " + PATH), repo.requests);
+    }
+
+    @Test
+    public void downloadVerifiesSha1() throws IOException {
+        sut(0, true).download(repo.url(PATH), to);
+        assertArrayEquals(content, Files.readAllBytes(to.toPath()));
+        assertEquals(List.of("GET " + PATH, "GET " + PATH + ".sha1"), repo.requests);
+    }
+
+    @Test
+    public void downloadFallsBackToMd5() throws IOException {
+        repo.files.remove(PATH + ".sha1");
+        sut(0, true).download(repo.url(PATH), to);
+        assertArrayEquals(content, Files.readAllBytes(to.toPath()));
+        assertEquals(List.of("GET " + PATH, "GET " + PATH + ".sha1", "GET " + PATH + ".md5"), repo.requests);
+    }
+
+    @Test
+    public void downloadWithoutPublishedChecksums() throws IOException {
+        repo.files.remove(PATH + ".sha1");
+        repo.files.remove(PATH + ".md5");
+        sut(0, true).download(repo.url(PATH), to);
+        assertArrayEquals(content, Files.readAllBytes(to.toPath()));
+    }
+
+    @Test
+    public void malformedChecksumsAreIgnored() throws IOException {
+        repo.files.put(PATH + ".sha1", "<html>".getBytes(UTF_8));
+        repo.files.remove(PATH + ".md5");
+        sut(0, true).download(repo.url(PATH), to);
+        assertArrayEquals(content, Files.readAllBytes(to.toPath()));
+    }
+
+    @Test
+    public void checksumMismatchIsRetriedAndDeleted() {
+        repo.files.put(PATH + ".sha1", "0000000000000000000000000000000000000000".getBytes(UTF_8));
+        var e = assertThrows(IOException.class, () -> sut(2, true).download(repo.url(PATH), to));
+        assertTrue(e.getMessage().contains("checksum mismatch"));
+        assertFalse(to.exists());
+        assertEquals(3, Collections.frequency(repo.requests, "GET " + PATH));
+    }
+
+    @Test
+    public void serverErrorsAreRetried() throws IOException {
+        repo.numFailures = 2;
+        sut(2, false).download(repo.url(PATH), to);
+        assertArrayEquals(content, Files.readAllBytes(to.toPath()));
+        assertEquals(3, repo.requests.size());
+    }
+
+    @Test
+    public void serverErrorsFailAfterRetries() {
+        repo.numFailures = 3;
+        assertThrows(IOException.class, () -> sut(2, false).download(repo.url(PATH), to));
+        assertEquals(3, repo.requests.size());
+    }
+
+    @Test
+    public void missingFilesAreNotRetried() throws IOException {
+        Files.write(to.toPath(), new byte[] { 1, 2, 3 });
+        assertThrows(FileNotFoundException.class, () -> sut(2, false).download(repo.url("/index-2.gz"), to));
+        assertEquals(1, repo.requests.size());
+        assertFalse(to.exists());
+    }
+
+    @Test
+    public void partialFileIsResumed() throws IOException {
+        Files.write(to.toPath(), Arrays.copyOf(content, 100));
+        sut(0, true).download(repo.url(PATH), to);
+        assertArrayEquals(content, Files.readAllBytes(to.toPath()));
+        assertEquals("bytes=100-", repo.ranges.get(0));
+    }
+
+    @Test
+    public void brokenConnectionIsResumed() throws IOException {
+        repo.numTruncated = 1;
+        sut(1, true).download(repo.url(PATH), to);
+        assertArrayEquals(content, Files.readAllBytes(to.toPath()));
+        assertNull(repo.ranges.get(0));
+        assertEquals("bytes=" + content.length / 2 + "-", repo.ranges.get(1));
+    }
+
+    @Test
+    public void brokenConnectionKeepsPartialFile() {
+        repo.numTruncated = 1;
+        assertThrows(IOException.class, () -> sut(0, false).download(repo.url(PATH), to));
+        assertEquals(content.length / 2, to.length());
+    }
+
+    @Test
+    public void serversWithoutRangesSendEverything() throws IOException {
+        repo.supportsRanges = false;
+        Files.write(to.toPath(), Arrays.copyOf(content, 100));
+        sut(0, true).download(repo.url(PATH), to);
+        assertArrayEquals(content, Files.readAllBytes(to.toPath()));
+    }
+
+    @Test
+    public void failedChecksumDownloadDoesNotRepeatDownload() throws IOException {
+        repo.numTruncatedChecksums = 1;
+        sut(1, true).download(repo.url(PATH), to);
+        assertArrayEquals(content, Files.readAllBytes(to.toPath()));
+        assertEquals(List.of("GET " + PATH, "GET " + PATH + ".sha1", "GET " + PATH + ".sha1"), repo.requests);
+    }
+
+    @Test
+    public void checksumServerErrorsAreRetried() throws IOException {
+        repo.numChecksumFailures = 2;
+        sut(2, true).download(repo.url(PATH), to);
+        assertArrayEquals(content, Files.readAllBytes(to.toPath()));
+        // only the verification is repeated, the index file is not downloaded again
+        assertEquals(List.of("GET " + PATH, "GET " + PATH + ".sha1", "GET " + PATH + ".sha1", "GET " + PATH + ".sha1"), repo.requests);
+    }
+
+    @Test
+    public void checksumServerErrorsFailAfterRetries() throws IOException {
+        repo.numChecksumFailures = 3;
+        assertThrows(IOException.class, () -> sut(2, true).download(repo.url(PATH), to));
+        assertEquals(List.of("GET " + PATH, "GET " + PATH + ".sha1", "GET " + PATH + ".sha1", "GET " + PATH + ".sha1"), repo.requests);
+        // the file is not known to be corrupt, so it is kept for a later attempt
+        assertArrayEquals(content, Files.readAllBytes(to.toPath()));
+    }
+
+    @Test
+    public void goneChecksumsAreNotPublished() throws IOException {
+        repo.checksumFailureStatus = 410;
+        repo.numChecksumFailures = 1;
+        sut(0, true).download(repo.url(PATH), to);
+        assertArrayEquals(content, Files.readAllBytes(to.toPath()));
+        assertEquals(List.of("GET " + PATH, "GET " + PATH + ".sha1", "GET " + PATH + ".md5"), repo.requests);
+    }
+
+    @Test
+    public void completeFileIsKept() throws IOException {
+        Files.write(to.toPath(), content);
+        sut(0, true).download(repo.url(PATH), to);
+        assertArrayEquals(content, Files.readAllBytes(to.toPath()));
+        assertEquals(List.of("bytes=" + content.length + "-"), repo.ranges);
+        assertEquals(List.of("GET " + PATH, "GET " + PATH + ".sha1"), repo.requests);
+    }
+
+    @Test
+    public void unsatisfiableRangeStartsOver() throws IOException {
+        var tooLong = Arrays.copyOf(content, content.length + 10);
+        Files.write(to.toPath(), tooLong);
+        sut(1, true).download(repo.url(PATH), to);
+        assertArrayEquals(content, Files.readAllBytes(to.toPath()));
+        assertNull(repo.ranges.get(1));
+    }
+
+    @Test
+    public void existsSendsHead() throws IOException {
+        assertTrue(sut(0, false).exists(repo.url(PATH)));
+        assertFalse(sut(0, false).exists(repo.url("/index-2.gz")));
+        assertEquals(List.of("HEAD " + PATH, "HEAD /index-2.gz"), repo.requests);
+    }
+
+    @Test
+    public void fileUrlsAreCopied() throws IOException {
+        var from = ResourceUtils.getTestResource("some-index.gz");
+        sut(0, true).download(from.toURI().toURL(), to);
+        assertArrayEquals(content, Files.readAllBytes(to.toPath()));
+        assertTrue(sut(0, false).exists(from.toURI().toURL()));
+        assertFalse(sut(0, false).exists(new File(dirTmp, "missing").toURI().toURL()));
+    }
+
+    private static String hex(byte[] data, String algorithm) {
+        try {
+            var sb = new StringBuilder();
+            for (var b : MessageDigest.getInstance(algorithm).digest(data)) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Serves files with range support, and can fail or cut off a number of requests. */
+    private static class StandInRepository {
+
+        private final Map<String, byte[]> files = Collections.synchronizedMap(new HashMap<>());
+        private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+        private final List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+        private final HttpServer server;
+
+        private volatile boolean supportsRanges = true;
+        private volatile int numFailures;
+        private volatile int numTruncated;
+        private volatile int numTruncatedChecksums;
+        private volatile int numChecksumFailures;
+        private volatile int checksumFailureStatus = 503;
+
+        private StandInRepository() throws IOException {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/", this::handle);
+            server.start();
+        }
+
+        private URL url(String path) throws IOException {
+            return new URL("http://127.0.0.1:" + server.getAddress().getPort() + path);
+        }
+
+        private void stop() {
+            server.stop(0);
+        }
+
+        private void handle(HttpExchange ex) throws IOException {
+            try {
+                var path = ex.getRequestURI().getPath();
+                var isHead = ex.getRequestMethod().equals("HEAD");
+                requests.add(ex.getRequestMethod() + " " + path);
+                var data = files.get(path);
+                if (data == null) {
+                    ex.sendResponseHeaders(404, -1);
+                    return;
+                }
+                if (isHead) {
+                    ex.sendResponseHeaders(200, -1);
+                    return;
+                }
+                if (path.equals(PATH)) {
+                    ranges.add(ex.getRequestHeaders().getFirst("Range"));
+                }
+                if (path.endsWith(".sha1") && numChecksumFailures > 0) {
+                    numChecksumFailures--;
+                    ex.sendResponseHeaders(checksumFailureStatus, -1);
+                    return;
+                }
+                if (numFailures > 0) {
+                    numFailures--;
+                    ex.sendResponseHeaders(503, -1);
+                    return;
+                }
+                var range = ex.getRequestHeaders().getFirst("Range");
+                var start = 0;
+                if (range != null && supportsRanges) {
+                    start = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+                    if (start >= data.length) {
+                        ex.getResponseHeaders().add("Content-Range", "bytes */" + data.length);
+                        ex.sendResponseHeaders(416, -1);
+                        return;
+                    }
+                    ex.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + (data.length - 1) + "/" + data.length);
+                    ex.sendResponseHeaders(206, data.length - start);
+                } else {
+                    ex.sendResponseHeaders(200, data.length);
+                }
+                if (path.endsWith(".sha1") && numTruncatedChecksums > 0) {
+                    numTruncatedChecksums--;
+                    ex.getResponseBody().write(data, start, (data.length - start) / 2);
+                    ex.getResponseBody().flush();
+                    return;
+                }
+                if (numTruncated > 0) {
+                    numTruncated--;
+                    // announces the complete length, but the connection breaks in the middle
+                    ex.getResponseBody().write(data, start, (data.length - start) / 2);
+                    ex.getResponseBody().flush();
+                    return;
+                }
+                ex.getResponseBody().write(data, start, data.length - start);
+            } finally {
+                ex.close();
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -16,8 +16,13 @@
 package dev.c0ps.maveneasyindex;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -46,6 +51,49 @@ public class IndexFileReaderTest {
         // ... and others
     }
 
+    @Test
+    public void streamingVisitsTheSameArtifacts() {
+        var f = ResourceUtils.getTestResource("some-index.gz");
+        var streamed = new ArrayList<Artifact>();
+        sut.readIndexFile(f, streamed::add);
+
+        assertTrue(streamed.size() >= 329);
+        assertEquals(sut.readIndexFile(f), new HashSet<>(streamed));
+    }
+
+    @Test
+    public void repeatedStringsAreShared() {
+        var ids = sut.readIndexFile(ResourceUtils.getTestResource("index-717.gz"));
+        var byValue = new HashMap<String, String>();
+        for (var a : ids) {
+            assertSame(byValue.computeIfAbsent(a.groupId, g -> g), a.groupId);
+            assertSame(byValue.computeIfAbsent(a.packaging, p -> p), a.packaging);
+        }
+    }
+
+    @Test
+    public void unpooledReadDoesNotShareStrings() {
+        var f = ResourceUtils.getTestResource("index-717.gz");
+        var byValue = new HashMap<String, String>();
+        var numShared = new int[1];
+        sut.readIndexFile(f, ArtifactFilter.NONE, false, a -> {
+            if (byValue.computeIfAbsent(a.groupId, g -> g) == a.groupId) {
+                numShared[0]++;
+            }
+        });
+        // only the first occurrence of every group id is the instance in the map
+        assertEquals(byValue.size(), numShared[0]);
+    }
+
+    @Test
+    public void plexusContextIsShared() {
+        var a = IndexFileReader.indexingContext();
+        new IndexFileReader().warmUp();
+        var b = IndexFileReader.indexingContext();
+        assertSame(a, b);
+        assertEquals(a.getIndexCreators(), b.getIndexCreators());
+    }
+
     @Test
     public void handleExcessColons() {
         var ids = sut.readIndexFile(ResourceUtils.getTestResource("index-717.gz"));
@@ -0,0 +1,393 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import static dev.c0ps.maveneasyindex.BoundedCache.EvictionPolicy.LRU;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dev.c0ps.maveneasyindex.DownloadLimiter.Priority;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Request;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+
+public class IndexServiceTest {
+
+    private static final int THREADS = 2;
+    // the service loads at most two indices per thread ahead
+    private static final int WINDOW = 2 * THREADS;
+    // the only index with more than one artifact
+    private static final int PAGED = 13;
+    private static final int PAGED_SIZE = 25;
+
+    @TempDir
+    private File dirTmp;
+
+    private final ObjectMapper om = new ObjectMapper().registerModule(new ArtifactModule());
+    private final List<Integer> loaded = Collections.synchronizedList(new ArrayList<>());
+
+    private Set<Integer> existing;
+    private CountDownLatch blockFirst;
+    private ExecutorService batchPool;
+    private ExecutorService loadPool;
+    private RepositoryUtils r;
+    private IndexLoader loader;
+    private ResponseCache responses;
+    private IndexService sut;
+
+    @BeforeEach
+    public void setup() {
+        existing = Set.of(1, 2, 3, 5, 8, PAGED);
+        batchPool = Executors.newCachedThreadPool();
+        loadPool = Executors.newCachedThreadPool();
+        r = new RepositoryUtils("file:/does/not/exist/%d.gz", dirTmp.getAbsolutePath()) {
+            @Override
+            public boolean exists(int index) {
+                return existing.contains(index);
+            }
+        };
+        loader = new IndexLoader(null, null, null, null, null, null) {
+            @Override
+            public CompactArtifactSet get(int num, Priority priority) {
+                loaded.add(num);
+                var b = blockFirst;
+                if (b != null && num == 1) {
+                    try {
+                        b.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+                if (num == PAGED) {
+                    return CompactArtifactSet.of(IntStream.range(0, PAGED_SIZE) //
+                            .mapToObj(i -> new Artifact("g", "a" + i, "" + num, "jar").setReleaseDate(num)) //
+                            .collect(Collectors.toSet()));
+                }
+                return CompactArtifactSet.of(Set.of(new Artifact("g", "a", "" + num, "jar").setReleaseDate(num)));
+            }
+
+            @Override
+            public CompactArtifactSet getCached(int num) {
+                return null;
+            }
+        };
+        responses = new ResponseCache(loader, new BoundedCache<>(1024 * 1024, ResponseCache.EncodedResponse::estimateSize, LRU, 1, MINUTES));
+        sut = newService(0);
+    }
+
+    private IndexService newService(long timeoutSec) {
+        var loads = new AsyncLoads(loadPool);
+        return new IndexService(r, null, loader, responses, loads, null, null, null, om, batchPool, THREADS, timeoutSec);
+    }
+
+    @AfterEach
+    public void teardown() {
+        batchPool.shutdownNow();
+        loadPool.shutdownNow();
+    }
+
+    @Test
+    public void rangeIsWrittenInIndexOrder() throws IOException {
+        var res = sut.getRange(1, 3);
+        assertEquals(200, res.getStatus());
+        var actual = read(res);
+        assertEquals(List.of("1", "2", "3"), new ArrayList<>(actual.keySet()));
+        assertEquals(List.of(new Artifact("g", "a", "2", "jar").setReleaseDate(2)), actual.get("2"));
+    }
+
+    @Test
+    public void batchIsWrittenInRequestedOrder() throws IOException {
+        var actual = read(sut.getBatch(List.of(8, 2, 5, 1)));
+        assertEquals(List.of("8", "2", "5", "1"), new ArrayList<>(actual.keySet()));
+    }
+
+    @Test
+    public void missingIndicesAreSkipped() throws IOException {
+        assertEquals(List.of("3", "5", "8"), new ArrayList<>(read(sut.getRange(3, 9)).keySet()));
+        assertEquals(List.of("2"), new ArrayList<>(read(sut.getBatch(List.of(4, 2, 7))).keySet()));
+        loaded.sort(null);
+        assertEquals(List.of(2, 3, 5, 8), loaded);
+    }
+
+    @Test
+    public void repeatedIndicesAreWrittenOnce() throws IOException {
+        var actual = read(sut.getBatch(List.of(5, 1, 5, 2, 1)));
+        assertEquals(List.of("5", "1", "2"), new ArrayList<>(actual.keySet()));
+        assertEquals(3, loaded.size());
+    }
+
+    @Test
+    public void lookAheadIsBounded() throws Exception {
+        existing = IntStream.rangeClosed(1, 20).boxed().collect(Collectors.toSet());
+        blockFirst = new CountDownLatch(1);
+        var out = new ByteArrayOutputStream();
+        var writer = Executors.newSingleThreadExecutor();
+        try {
+            var written = writer.submit(() -> {
+                ((StreamingOutput) sut.getRange(1, 20).getEntity()).write(out);
+                return null;
+            });
+            // the first index blocks the response, so only the window can be loaded
+            for (var i = 0; i < 50 && loaded.size() < WINDOW; i++) {
+                Thread.sleep(100);
+            }
+            Thread.sleep(200);
+            assertEquals(WINDOW, loaded.size());
+
+            blockFirst.countDown();
+            written.get(5, TimeUnit.SECONDS);
+            assertEquals(20, loaded.size());
+            assertEquals(20, om.readValue(out.toByteArray(), new TypeReference<LinkedHashMap<String, Object>>() {}).size());
+        } finally {
+            writer.shutdownNow();
+        }
+    }
+
+    @Test
+    public void invalidRangesAreRejected() {
+        assertEquals(400, sut.getRange(0, 3).getStatus());
+        assertEquals(400, sut.getRange(5, 4).getStatus());
+        assertEquals(400, sut.getRange(1, 1001).getStatus());
+        // the largest valid range, the indices are only loaded once the response is written
+        assertEquals(200, sut.getRange(1, 1000).getStatus());
+        assertTrue(loaded.isEmpty());
+    }
+
+    @Test
+    public void invalidBatchesAreRejected() {
+        assertEquals(400, sut.getBatch(null).getStatus());
+        assertEquals(400, sut.getBatch(List.of()).getStatus());
+        assertEquals(400, sut.getBatch(IntStream.rangeClosed(1, 1001).boxed().collect(Collectors.toList())).getStatus());
+        assertEquals(400, sut.getBatch(List.of(1, 0)).getStatus());
+        assertEquals(400, sut.getBatch(List.of(-1)).getStatus());
+        assertEquals(400, sut.getBatch(Arrays.asList(1, null)).getStatus());
+        assertTrue(loaded.isEmpty());
+    }
+
+    @Test
+    public void loadsThatFinishRightAwayAreResumed() throws Exception {
+        sut = newService(5);
+        var res = get(2, Map.of());
+        assertEquals(200, res.getStatus());
+        assertEquals(List.of(new Artifact("g", "a", "2", "jar").setReleaseDate(2)), om.readValue((byte[]) res.getEntity(), new TypeReference<List<Artifact>>() {}));
+        assertEquals(404, get(4, Map.of()).getStatus());
+    }
+
+    @Test
+    public void matchingEntityTagIsNotModified() throws Exception {
+        var res = get(2, Map.of());
+        assertEquals(200, res.getStatus());
+        var tag = (EntityTag) res.getMetadata().getFirst(HttpHeaders.ETAG);
+
+        var notModified = get(2, Map.of(HttpHeaders.IF_NONE_MATCH, "\"" + tag.getValue() + "\""));
+        assertEquals(304, notModified.getStatus());
+        assertNull(notModified.getEntity());
+        assertEquals(tag, notModified.getMetadata().getFirst(HttpHeaders.ETAG));
+
+        assertEquals(200, get(2, Map.of(HttpHeaders.IF_NONE_MATCH, "\"other\"")).getStatus());
+    }
+
+    @Test
+    public void responsesAreOnlyCompressedWhenAccepted() throws Exception {
+        var plain = get(2, Map.of());
+        assertNull(plain.getHeaderString(HttpHeaders.CONTENT_ENCODING));
+        assertEquals("Accept, Accept-Encoding", plain.getHeaderString(HttpHeaders.VARY));
+
+        var compressed = get(2, Map.of(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"));
+        assertEquals("gzip", compressed.getHeaderString(HttpHeaders.CONTENT_ENCODING));
+        assertEquals("Accept, Accept-Encoding", compressed.getHeaderString(HttpHeaders.VARY));
+        assertNotEquals(plain.getMetadata().getFirst(HttpHeaders.ETAG), compressed.getMetadata().getFirst(HttpHeaders.ETAG));
+        try (var in = new GZIPInputStream(new ByteArrayInputStream((byte[]) compressed.getEntity()))) {
+            assertArrayEquals((byte[]) plain.getEntity(), in.readAllBytes());
+        }
+    }
+
+    @Test
+    public void explicitGzipTakesPrecedenceOverWildcard() throws Exception {
+        assertTrue(isGzip("*"));
+        assertTrue(isGzip("GZIP;q=0.5"));
+        assertTrue(isGzip("*;q=0, gzip"));
+        assertTrue(isGzip("gzip, *;q=0"));
+        assertFalse(isGzip("identity"));
+        assertFalse(isGzip("gzip;q=0"));
+        assertFalse(isGzip("gzip; q=0.0, *"));
+        assertFalse(isGzip("*;q=0"));
+        assertFalse(isGzip("gzip;q=invalid"));
+    }
+
+    @Test
+    public void pagesAreSlicesOfTheSortedArtifacts() throws Exception {
+        var all = new ArrayList<Artifact>();
+        loader.get(PAGED, Priority.INTERACTIVE).forEach(all::add);
+
+        var pages = new ArrayList<Artifact>();
+        for (var offset = 0; offset < PAGED_SIZE; offset += 10) {
+            var res = get(PAGED, false, List.of(), offset, 10, Map.of());
+            assertEquals(200, res.getStatus());
+            assertEquals("" + PAGED_SIZE, res.getHeaderString("X-Total-Count"));
+            var page = readList(res);
+            assertEquals(Math.min(10, PAGED_SIZE - offset), page.size());
+            pages.addAll(page);
+        }
+        assertEquals(all, pages);
+
+        // a missing limit returns the remainder, a missing offset starts at the beginning
+        assertEquals(all.subList(20, PAGED_SIZE), readList(get(PAGED, false, List.of(), 20, null, Map.of())));
+        assertEquals(all.subList(0, 3), readList(get(PAGED, false, List.of(), null, 3, Map.of())));
+        assertEquals(all, readList(get(PAGED, false, List.of(), 0, 100_000, Map.of())));
+    }
+
+    @Test
+    public void offsetPastTheEndReturnsEmptyPage() throws Exception {
+        for (var offset : List.of(PAGED_SIZE, PAGED_SIZE + 1, Integer.MAX_VALUE)) {
+            var res = get(PAGED, false, List.of(), offset, 10, Map.of());
+            assertEquals(200, res.getStatus());
+            assertEquals("" + PAGED_SIZE, res.getHeaderString("X-Total-Count"));
+            assertEquals(List.of(), readList(res));
+        }
+        // the end of the page is clamped as well
+        assertEquals(1, readList(get(PAGED, false, List.of(), PAGED_SIZE - 1, 100_000, Map.of())).size());
+    }
+
+    @Test
+    public void invalidPagesAreRejected() throws Exception {
+        assertEquals(400, get(PAGED, false, List.of(), -1, 10, Map.of()).getStatus());
+        assertEquals(400, get(PAGED, false, List.of(), 0, 0, Map.of()).getStatus());
+        assertEquals(400, get(PAGED, false, List.of(), 0, -1, Map.of()).getStatus());
+        assertEquals(400, get(PAGED, false, List.of(), null, 100_001, Map.of()).getStatus());
+        // paging applies to the complete index only
+        assertEquals(400, get(PAGED, true, List.of(), 0, 10, Map.of()).getStatus());
+        assertEquals(400, get(PAGED, true, List.of(), null, 10, Map.of()).getStatus());
+        assertEquals(400, get(PAGED, false, List.of("jar"), 0, 10, Map.of()).getStatus());
+        assertEquals(400, get(PAGED, false, List.of("jar"), 5, null, Map.of()).getStatus());
+        assertTrue(loaded.isEmpty());
+    }
+
+    @Test
+    public void completeResponsesHaveNoTotalCount() throws Exception {
+        var res = get(PAGED, Map.of());
+        assertEquals(200, res.getStatus());
+        assertNull(res.getHeaderString("X-Total-Count"));
+        assertEquals(PAGED_SIZE, om.readValue((byte[]) res.getEntity(), new TypeReference<List<Artifact>>() {}).size());
+    }
+
+    private List<Artifact> readList(Response res) throws IOException {
+        var out = new ByteArrayOutputStream();
+        ((StreamingOutput) res.getEntity()).write(out);
+        return om.readValue(out.toByteArray(), new TypeReference<List<Artifact>>() {});
+    }
+
+    private boolean isGzip(String acceptEncoding) throws Exception {
+        return "gzip".equals(get(2, Map.of(HttpHeaders.ACCEPT_ENCODING, acceptEncoding)).getHeaderString(HttpHeaders.CONTENT_ENCODING));
+    }
+
+    private Response get(int num, Map<String, String> headers) throws Exception {
+        return get(num, false, List.of(), null, null, headers);
+    }
+
+    private Response get(int num, boolean stream, List<String> packagings, Integer offset, Integer limit, Map<String, String> headers) throws Exception {
+        var h = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+        h.putAll(headers);
+        var resumed = new CompletableFuture<Object>();
+        sut.get(num, stream, true, packagings, List.of(), null, null, offset, limit, httpHeaders(h), request(h), asyncResponse(resumed));
+        return (Response) resumed.get(5, TimeUnit.SECONDS);
+    }
+
+    private static HttpHeaders httpHeaders(Map<String, String> h) {
+        return (HttpHeaders) Proxy.newProxyInstance(HttpHeaders.class.getClassLoader(), new Class<?>[] { HttpHeaders.class }, (proxy, m, args) -> {
+            switch (m.getName()) {
+            case "getHeaderString":
+                return h.get((String) args[0]);
+            case "getAcceptableMediaTypes":
+                return List.of();
+            default:
+                throw new UnsupportedOperationException(m.getName());
+            }
+        });
+    }
+
+    private static Request request(Map<String, String> h) {
+        return (Request) Proxy.newProxyInstance(Request.class.getClassLoader(), new Class<?>[] { Request.class }, (proxy, m, args) -> {
+            if (!m.getName().equals("evaluatePreconditions") || args == null || !(args[0] instanceof EntityTag)) {
+                throw new UnsupportedOperationException(m.getName());
+            }
+            var tag = (EntityTag) args[0];
+            var matches = ("\"" + tag.getValue() + "\"").equals(h.get(HttpHeaders.IF_NONE_MATCH));
+            return matches ? Response.notModified(tag) : null;
+        });
+    }
+
+    private static AsyncResponse asyncResponse(CompletableFuture<Object> resumed) {
+        return (AsyncResponse) Proxy.newProxyInstance(AsyncResponse.class.getClassLoader(), new Class<?>[] { AsyncResponse.class }, (proxy, m, args) -> {
+            switch (m.getName()) {
+            case "resume":
+                return resumed.complete(args[0]);
+            case "setTimeout":
+                return true;
+            case "register":
+                return List.of();
+            case "setTimeoutHandler":
+                return null;
+            default:
+                throw new UnsupportedOperationException(m.getName());
+            }
+        });
+    }
+
+    private LinkedHashMap<String, List<Artifact>> read(Response res) throws IOException {
+        var out = new ByteArrayOutputStream();
+        ((StreamingOutput) res.getEntity()).write(out);
+        return om.readValue(out.toByteArray(), new TypeReference<LinkedHashMap<String, List<Artifact>>>() {});
+    }
+}
\ No newline at end of file
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import dev.c0ps.commons.ResourceUtils;
+
+public class MetricsTest {
+
+    private Metrics sut;
+
+    @BeforeEach
+    public void setup() {
+        sut = new Metrics();
+    }
+
+    @Test
+    public void emptyRegistry() {
+        assertEquals("", sut.scrape());
+    }
+
+    @Test
+    public void counter() {
+        var c = sut.counter("c_total", "some help");
+        c.inc();
+        c.inc(2);
+        var expected = "# HELP c_total some help\n" //
+                + "# TYPE c_total counter\n" //
+                + "c_total 3\n";
+        assertEquals(expected, sut.scrape());
+    }
+
+    @Test
+    public void sameSeriesIsReused() {
+        var a = sut.counter("c_total", "help", "k", "v");
+        assertSame(a, sut.counter("c_total", "help", "k", "v"));
+    }
+
+    @Test
+    public void labelsAreEscapedAndSorted() {
+        sut.counter("c_total", "help", "k", "b").inc();
+        sut.counter("c_total", "help", "k", "a\"\\\n").inc(2);
+        var expected = "# HELP c_total help\n" //
+                + "# TYPE c_total counter\n" //
+                + "c_total{k=\"a\\\"\\\\\\n\"} 2\n" //
+                + "c_total{k=\"b\"} 1\n";
+        assertEquals(expected, sut.scrape());
+    }
+
+    @Test
+    public void gauge() {
+        sut.gauge("g", "help", () -> 1.5);
+        sut.gauge("g", "help", () -> 2.5);
+        assertEquals("# HELP g help\n# TYPE g gauge\ng 2.5\n", sut.scrape());
+    }
+
+    @Test
+    public void histogram() {
+        var h = sut.histogram("h", "help", new double[] { 0.5, 2 }, "k", "v");
+        h.observe(0.1);
+        h.observe(0.5);
+        h.observe(1);
+        h.observe(10);
+        var expected = "# HELP h help\n" //
+                + "# TYPE h histogram\n" //
+                + "h_bucket{k=\"v\",le=\"0.5\"} 2\n" //
+                + "h_bucket{k=\"v\",le=\"2\"} 3\n" //
+                + "h_bucket{k=\"v\",le=\"+Inf\"} 4\n" //
+                + "h_sum{k=\"v\"} 11.6\n" //
+                + "h_count{k=\"v\"} 4\n";
+        assertEquals(expected, sut.scrape());
+    }
+
+    @Test
+    public void conflictingTypesFail() {
+        sut.counter("x", "help");
+        assertThrows(IllegalArgumentException.class, () -> sut.histogram("x", "help", Metrics.DURATION_BUCKETS));
+    }
+
+    @Test
+    public void oddLabelsFail() {
+        assertThrows(IllegalArgumentException.class, () -> sut.counter("x", "help", "k"));
+    }
+
+    @Test
+    public void cacheMetrics() {
+        var cache = new BoundedCache<String, String>(100, s -> s.length(), BoundedCache.EvictionPolicy.LRU, 1, TimeUnit.MINUTES);
+        cache.registerMetrics(sut, "test");
+        cache.put("a", "12345");
+        cache.get("a");
+        cache.get("b");
+        var out = sut.scrape();
+        assertTrue(out.contains("maven_easy_index_cache_hits_total{cache=\"test\"} 1\n"), out);
+        assertTrue(out.contains("maven_easy_index_cache_misses_total{cache=\"test\"} 1\n"), out);
+        assertTrue(out.contains("maven_easy_index_cache_entries{cache=\"test\"} 1\n"), out);
+        assertTrue(out.contains("maven_easy_index_cache_bytes{cache=\"test\"} 5\n"), out);
+        assertTrue(out.contains("maven_easy_index_cache_entry_bytes_count{cache=\"test\"} 1\n"), out);
+    }
+
+    @Test
+    public void readingIndexFilesIsCounted() {
+        var docs = Metrics.DEFAULT.counter("maven_easy_index_documents_visited_total", "");
+        var kept = Metrics.DEFAULT.counter("maven_easy_index_artifacts_kept_total", "");
+        var docsBefore = docs.get();
+        var keptBefore = kept.get();
+
+        var count = new int[1];
+        new IndexFileReader().readIndexFile(ResourceUtils.getTestResource("some-index.gz"), a -> count[0]++);
+
+        assertEquals(count[0], kept.get() - keptBefore);
+        assertTrue(docs.get() - docsBefore > count[0]);
+        assertTrue(Metrics.DEFAULT.scrape().contains("maven_easy_index_parse_duration_seconds_count"));
+    }
+}
\ No newline at end of file
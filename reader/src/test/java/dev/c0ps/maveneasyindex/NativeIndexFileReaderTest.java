@@ -0,0 +1,249 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dev.c0ps.commons.ResourceUtils;
+
+public class NativeIndexFileReaderTest {
+
+    @TempDir
+    private File dirTmp;
+
+    private IndexFileReader lucene;
+    private NativeIndexFileReader sut;
+
+    @BeforeEach
+    public void setup() {
+        lucene = new IndexFileReader();
+        sut = new NativeIndexFileReader();
+    }
+
+    @Test
+    public void sameArtifactsAsLuceneForSomeIndex() {
+        assertSameArtifacts(ResourceUtils.getTestResource("some-index.gz"));
+    }
+
+    @Test
+    public void sameArtifactsAsLuceneForIndex717() {
+        assertSameArtifacts(ResourceUtils.getTestResource("index-717.gz"));
+    }
+
+    @Test
+    public void sameArtifactsAsLuceneWithFilter() {
+        var f = ResourceUtils.getTestResource("index-717.gz");
+        var filter = new ArtifactFilter(Set.of("jar"), Set.of("org.", "io."), 1626000000000L, 1626100000000L);
+        var expected = new ArrayList<Artifact>();
+        lucene.readIndexFile(f, filter, expected::add);
+        var actual = new ArrayList<Artifact>();
+        sut.readIndexFile(f, filter, actual::add);
+        assertTrue(expected.size() > 0);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void basicRecord() throws IOException {
+        var f = write(true, record("u", "g|a|v|NA|jar", "i", "jar|1|2|1|1|1|jar", "m", "123"));
+        assertEquals(List.of(art("g:a:v:jar:123")), read(sut, f));
+        assertEquals(read(lucene, f), read(sut, f));
+    }
+
+    @Test
+    public void uncompressedStreams() throws IOException {
+        var f = write(false, record("u", "g|a|v|NA|jar", "i", "jar|1|2|1|1|1|jar", "m", "123"));
+        assertEquals(List.of(art("g:a:v:jar:123")), read(sut, f));
+        assertEquals(read(lucene, f), read(sut, f));
+    }
+
+    @Test
+    public void classifiersAndIndexRecordsAreSkipped() throws IOException {
+        var f = write(true, //
+                record("u", "g|a|v|sources|jar", "i", "jar|1|2|1|1|1|jar", "m", "1"), //
+                record("del", "g|a|v|NA|jar", "m", "2"), //
+                record("DESCRIPTOR", "NexusIndex", "IDXINFO", "1.0|central"), //
+                record("allGroups", "allGroups", "allGroupsList", "g|h"), //
+                record("rootGroups", "rootGroups", "rootGroupsList", "g|h"), //
+                record("u", "g|a|v|NA|pom", "i", "pom|1|2|0|0|0|pom", "m", "3"));
+        assertEquals(List.of(art("g:a:v:pom:3")), read(sut, f));
+        assertEquals(read(lucene, f), read(sut, f));
+    }
+
+    @Test
+    public void extensionIsDerivedLikeLucene() throws IOException {
+        var f = write(true, //
+                // extension of the info field is appended to the coordinate
+                record("u", "g|a1|v|NA", "i", "jar|1|2|1|1|1|war", "m", "1"), //
+                // info field takes precedence
+                record("u", "g|a2|v|NA|zip", "i", "pom|1|2|1|1|1|jar.sha512", "m", "2"), //
+                // info without extension falls back to the packaging ...
+                record("u", "g|a3|v|NA|zip", "i", "pom|1|2|1|1|1", "m", "3"), //
+                // ... or to jar
+                record("u", "g|a4|v|NA|zip", "i", "bundle|1|2|1|1|1", "m", "4"), //
+                // without info, the extension of the coordinate is used
+                record("u", "g|a5|v|NA|aar", "m", "5"));
+        var expected = List.of(art("g:a1:v:war:1"), art("g:a2:v:jar:2"), art("g:a3:v:pom:3"), art("g:a4:v:jar:4"), art("g:a5:v:aar:5"));
+        assertEquals(expected, read(sut, f));
+        assertEquals(read(lucene, f), read(sut, f));
+    }
+
+    @Test
+    public void firstOccurrenceOfAFieldCounts() throws IOException {
+        var f = write(true, record("u", "g|a|v|NA|jar", "m", "1", "u", "x|y|z|NA|pom", "m", "2"));
+        assertEquals(List.of(art("g:a:v:jar:1")), read(sut, f));
+        assertEquals(read(lucene, f), read(sut, f));
+    }
+
+    @Test
+    public void nonAsciiAndLongValues() throws IOException {
+        var big = "x".repeat(200_000);
+        var f = write(true, //
+                record("u", "gé|a😀|v€|NA|jar", "n", big, "m", "1"), //
+                record("Export-Package", big, "u", "g|a|v|NA|jar", "m", "2"));
+        assertEquals(List.of(art("gé:a😀:v€:jar:1"), art("g:a:v:jar:2")), read(sut, f));
+        assertEquals(read(lucene, f), read(sut, f));
+    }
+
+    @Test
+    public void invalidRecordsAreSkipped() throws IOException {
+        var f = write(true, //
+                record("u", "g|a|v", "m", "1"), //
+                record("u", "g|a|v|NA", "m", "2"), //
+                record("u", "g:x|a|v|NA|jar", "m", "3"), //
+                record("u", "g|a|v|NA|jar", "m", "four"), //
+                record("u", "g|a|v|NA|jar", "m", "5"));
+        assertEquals(List.of(art("g:a:v:jar:5")), read(sut, f));
+    }
+
+    @Test
+    public void missingReleaseDateIsReplacedWithNow() throws IOException {
+        var f = write(true, record("u", "g|a|v|NA|jar"));
+        var before = System.currentTimeMillis();
+        var artifacts = read(sut, f);
+        assertEquals(1, artifacts.size());
+        assertTrue(artifacts.get(0).releaseDate >= before);
+        assertTrue(artifacts.get(0).releaseDate <= System.currentTimeMillis());
+    }
+
+    @Test
+    public void unknownVersionFails() throws IOException {
+        var f = new File(dirTmp, "index.gz");
+        try (var out = new DataOutputStream(new GZIPOutputStream(new FileOutputStream(f)))) {
+            out.writeByte(2);
+            out.writeLong(0);
+        }
+        assertThrows(RuntimeException.class, () -> read(sut, f));
+    }
+
+    @Test
+    public void truncatedRecordsFail() throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        writeRecord(new DataOutputStream(bytes), "u", "g|a|v|NA|jar", "m", "1");
+        var f = new File(dirTmp, "index.gz");
+        try (var out = new DataOutputStream(new FileOutputStream(f))) {
+            out.writeByte(1);
+            out.writeLong(0);
+            out.write(bytes.toByteArray(), 0, bytes.size() - 3);
+        }
+        assertThrows(RuntimeException.class, () -> read(sut, f));
+    }
+
+    private void assertSameArtifacts(File f) {
+        var expected = new ArrayList<Artifact>();
+        lucene.readIndexFile(f, expected::add);
+        var actual = new ArrayList<Artifact>();
+        sut.readIndexFile(f, actual::add);
+        assertEquals(expected, actual);
+        assertEquals(lucene.readIndexFile(f), sut.readIndexFile(f));
+    }
+
+    private static List<Artifact> read(IndexFileReader reader, File f) {
+        var artifacts = new ArrayList<Artifact>();
+        reader.readIndexFile(f, artifacts::add);
+        return artifacts;
+    }
+
+    private static String[] record(String... fields) {
+        return fields;
+    }
+
+    private File write(boolean isGzip, String[]... records) throws IOException {
+        var f = new File(dirTmp, "index.gz");
+        try (var fos = new FileOutputStream(f)) {
+            OutputStream os = isGzip ? new GZIPOutputStream(fos) : fos;
+            try (var out = new DataOutputStream(os)) {
+                out.writeByte(1);
+                out.writeLong(1234);
+                for (var r : records) {
+                    writeRecord(out, r);
+                }
+            }
+        }
+        return f;
+    }
+
+    private static void writeRecord(DataOutputStream out, String... fields) throws IOException {
+        out.writeInt(fields.length / 2);
+        for (var i = 0; i < fields.length; i += 2) {
+            out.writeByte(4); // stored
+            out.writeUTF(fields[i]);
+            var value = modifiedUtf8(fields[i + 1]);
+            out.writeInt(value.length);
+            out.write(value);
+        }
+    }
+
+    // same encoding as writeUTF, but without its length limit
+    private static byte[] modifiedUtf8(String s) {
+        var out = new ByteArrayOutputStream();
+        for (var i = 0; i < s.length(); i++) {
+            var c = s.charAt(i);
+            if (c >= 0x01 && c <= 0x7f) {
+                out.write(c);
+            } else if (c <= 0x7ff) {
+                out.write(0xc0 | (c >> 6));
+                out.write(0x80 | (c & 0x3f));
+            } else {
+                out.write(0xe0 | (c >> 12));
+                out.write(0x80 | ((c >> 6) & 0x3f));
+                out.write(0x80 | (c & 0x3f));
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static Artifact art(String s) {
+        var parts = s.split(":");
+        return new Artifact(parts[0], parts[1], parts[2], parts[3]).setReleaseDate(Long.parseLong(parts[4]));
+    }
+}
\ No newline at end of file
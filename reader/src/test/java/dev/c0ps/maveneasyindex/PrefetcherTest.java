@@ -0,0 +1,108 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import static dev.c0ps.maveneasyindex.BoundedCache.EvictionPolicy.LRU;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dev.c0ps.commons.ResourceUtils;
+
+public class PrefetcherTest {
+
+    private static final int DEPTH = 3;
+
+    @TempDir
+    private File dirRepo;
+    @TempDir
+    private File dirBase;
+
+    private RepositoryUtils r;
+    private BoundedCache<Integer, CompactArtifactSet> cache;
+    private Prefetcher sut;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        r = new RepositoryUtils(dirRepo.toURI().toURL() + "index-%d.gz", dirBase.getAbsolutePath());
+        cache = new BoundedCache<>(64 * 1024 * 1024, CompactArtifactSet::estimateSize, LRU, 1, MINUTES);
+        var base = dirBase.getAbsolutePath();
+        var loader = new IndexLoader(r, new NativeIndexFileReader(), new ArtifactStore(), cache, new VersionIndex(base, Runnable::run), new ReleaseStore(base));
+        sut = new Prefetcher(r, loader, 1, DEPTH);
+    }
+
+    private void publish(int... nums) throws IOException {
+        var content = ResourceUtils.getTestResource("some-index.gz").toPath();
+        for (var num : nums) {
+            Files.copy(content, new File(dirRepo, "index-" + num + ".gz").toPath());
+        }
+    }
+
+    @Test
+    public void nothingIsPrefetchedWithoutLocalIndex() throws IOException {
+        publish(1, 2, 3);
+        sut.prefetch();
+        assertEquals(List.of(), r.getLocalIndices());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void newIndicesAreProbedUpToDepth() throws IOException {
+        publish(1, 2, 3, 4, 5, 6);
+        r.download(1);
+        sut.prefetch();
+        assertEquals(List.of(1, 2, 3, 4), r.getLocalIndices());
+        assertFalse(cache.contains(1));
+        assertTrue(cache.contains(2));
+        assertTrue(cache.contains(3));
+        assertTrue(cache.contains(4));
+
+        sut.prefetch();
+        assertEquals(List.of(1, 2, 3, 4, 5, 6), r.getLocalIndices());
+        assertTrue(cache.contains(6));
+    }
+
+    @Test
+    public void newestLocalIndicesAreCachedWithoutNewOnes() throws IOException {
+        publish(1, 2);
+        r.download(1);
+        r.download(2);
+        sut.prefetch();
+        assertEquals(List.of(1, 2), r.getLocalIndices());
+        assertTrue(cache.contains(1));
+        assertTrue(cache.contains(2));
+    }
+
+    @Test
+    public void failuresDoNotEscape() throws IOException {
+        publish(1);
+        r.download(1);
+        // an unreadable index file fails the load
+        Files.write(new File(dirBase, "maven-crawler-1.tmp").toPath(), new byte[] { 1, 2, 3 });
+        sut.prefetch();
+        assertEquals(0, cache.size());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,338 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dev.c0ps.commons.ResourceUtils;
+import dev.c0ps.maveneasyindex.ReleaseStore.Position;
+
+public class ReleaseStoreTest {
+
+    @TempDir
+    private File dirTmp;
+    private ReleaseStore sut;
+
+    @BeforeEach
+    public void setup() {
+        sut = new ReleaseStore(dirTmp.getAbsolutePath());
+    }
+
+    @Test
+    public void emptyStoreHasNoResults() {
+        assertEquals(List.of(), scan(sut, Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void artifactsAreOrderedByReleaseDateAcrossIndices() {
+        sut.add(1, Set.of(art("a", 30), art("b", 10)));
+        sut.add(2, Set.of(art("c", 20), art("d", 40)));
+        assertEquals(List.of("b@1", "c@2", "a@1", "d@2"), scan(sut, Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void timeWindowIncludesFromAndExcludesTo() {
+        sut.add(1, Set.of(art("a", 10), art("b", 20), art("c", 30)));
+        assertEquals(List.of("b@1"), scan(sut, 20, 30));
+        assertEquals(List.of("a@1", "b@1"), scan(sut, 0, 21));
+        assertEquals(List.of(), scan(sut, 20, 20));
+        assertEquals(List.of(), scan(sut, 31, 100));
+    }
+
+    @Test
+    public void equalReleaseDatesAreOrderedByIndex() {
+        sut.add(2, Set.of(art("b", 10)));
+        sut.add(1, Set.of(art("a", 10)));
+        assertEquals(List.of("a@1", "b@2"), scan(sut, 10, 11));
+    }
+
+    @Test
+    public void artifactsAreRestoredCompletely() {
+        var a = new Artifact("gé", "a😀", "1.0", "aar").setReleaseDate(123);
+        sut.add(1, Set.of(a));
+        var actual = new ArrayList<Artifact>();
+        sut.scan(0, 1000, (x, idx) -> actual.add(x));
+        assertEquals(List.of(a), actual);
+    }
+
+    @Test
+    public void indicesAreOnlyAddedOnce() {
+        sut.add(1, Set.of(art("a", 10)));
+        sut.add(1, Set.of(art("b", 20)));
+        assertTrue(sut.contains(1));
+        assertFalse(sut.contains(2));
+        assertEquals(List.of("a@1"), scan(sut, Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void storeIsPersisted() {
+        sut.add(1, Set.of(art("a", 10)));
+        sut.add(2, Set.of(art("b", 20)));
+        var other = new ReleaseStore(dirTmp.getAbsolutePath());
+        assertTrue(other.contains(1));
+        assertTrue(other.contains(2));
+        assertEquals(List.of("a@1", "b@2"), scan(other, Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void corruptBatchesAreDeleted() throws IOException {
+        var f = new File(dirTmp, "releases/index-7.col");
+        Files.writeString(f.toPath(), "corrupt");
+        var other = new ReleaseStore(dirTmp.getAbsolutePath());
+        assertFalse(other.contains(7));
+        assertFalse(f.exists());
+    }
+
+    @Test
+    public void realIndex() {
+        var artifacts = new IndexFileReader().readIndexFile(ResourceUtils.getTestResource("some-index.gz"));
+        sut.add(1, artifacts);
+
+        var actual = new ArrayList<Artifact>();
+        sut.scan(Long.MIN_VALUE, Long.MAX_VALUE, (a, idx) -> actual.add(a));
+        assertEquals(artifacts, new HashSet<>(actual));
+        for (var i = 1; i < actual.size(); i++) {
+            assertTrue(actual.get(i - 1).releaseDate <= actual.get(i).releaseDate);
+        }
+
+        var from = actual.get(actual.size() / 4).releaseDate;
+        var to = actual.get(actual.size() * 3 / 4).releaseDate;
+        var expected = new HashSet<Artifact>();
+        for (var a : artifacts) {
+            if (a.releaseDate >= from && a.releaseDate < to) {
+                expected.add(a);
+            }
+        }
+        var window = new HashSet<Artifact>();
+        sut.scan(from, to, (a, idx) -> window.add(a));
+        assertEquals(expected, window);
+    }
+
+    @Test
+    public void sinceExcludesTimestamp() {
+        sut.add(1, Set.of(art("a", 10), art("b", 20)));
+        sut.add(2, Set.of(art("c", 20), art("d", 30)));
+        assertEquals(List.of("b@1", "c@2", "d@2"), since(Position.after(10), 10));
+        assertEquals(List.of("d@2"), since(Position.after(20), 10));
+        assertEquals(List.of(), since(Position.after(30), 10));
+    }
+
+    @Test
+    public void seekStopsAtLimit() {
+        sut.add(1, Set.of(art("a", 10), art("b", 20)));
+        sut.add(2, Set.of(art("c", 20), art("d", 30)));
+        assertEquals(List.of("a@1", "b@1"), since(Position.after(0), 2));
+    }
+
+    @Test
+    public void seekWithoutNewArtifactsKeepsPosition() {
+        sut.add(1, Set.of(art("a", 10)));
+        var p = Position.after(10);
+        assertEquals(p, sut.seek(p, 10));
+    }
+
+    @Test
+    public void pagesResumeBetweenEqualReleaseDates() {
+        sut.add(1, Set.of(art("a", 10), art("b", 10), art("c", 10)));
+        sut.add(2, Set.of(art("d", 10), art("e", 20)));
+        var all = new ArrayList<String>();
+        var p = Position.after(0);
+        for (var i = 0; i < 10; i++) {
+            var until = sut.seek(p, 2);
+            if (until.equals(p)) {
+                break;
+            }
+            sut.scan(p, until, (a, idx) -> all.add(a.groupId + "@" + idx));
+            p = Position.parse(until.toString());
+        }
+        assertEquals(5, all.size());
+        assertEquals(5, new HashSet<>(all).size());
+        assertEquals("d@2", all.get(3));
+        assertEquals("e@2", all.get(4));
+    }
+
+    @Test
+    public void indicesAddedBetweenSeekAndScanFollowWithNextPosition() {
+        sut.add(1, Set.of(art("a", 10), art("b", 30)));
+        var after = Position.after(0);
+        var until = sut.seek(after, 2);
+        sut.add(2, Set.of(art("c", 20), art("d", 40)));
+        var res = new ArrayList<String>();
+        sut.scan(after, until, (a, idx) -> res.add(a.groupId + "@" + idx));
+        assertEquals(List.of("a@1", "b@1"), res);
+        assertEquals(List.of("c@2", "d@2"), since(until, 10));
+    }
+
+    @Test
+    public void indicesAddedAfterTokenAreResumed() {
+        sut.add(1, Set.of(art("a", 10), art("b", 30)));
+        var token = sut.seek(Position.after(5), 10).toString();
+        sut.add(2, Set.of(art("c", 20), art("d", 40), art("e", 5)));
+        sut.add(3, Set.of(art("f", 1), art("g", 30)));
+
+        var after = Position.parse(token);
+        var until = sut.seek(after, 10);
+        var res = new ArrayList<String>();
+        sut.scan(after, until, (a, idx) -> res.add(a.groupId + "@" + idx));
+        // the artifacts released before the token come first, the timestamp still excludes e and f
+        assertEquals(List.of("c@2", "g@3", "d@2"), res);
+        assertEquals(List.of(), since(Position.parse(until.toString()), 10));
+    }
+
+    @Test
+    public void resumedIndicesArePaged() {
+        sut.add(1, Set.of(art("a", 100)));
+        var p = sut.seek(Position.after(0), 10);
+        sut.add(2, Set.of(art("b", 10), art("c", 20), art("d", 30), art("e", 200)));
+        var res = new ArrayList<String>();
+        for (var i = 0; i < 10; i++) {
+            var until = sut.seek(p, 1);
+            if (until.equals(p)) {
+                break;
+            }
+            sut.scan(p, until, (a, idx) -> res.add(a.groupId + "@" + idx));
+            p = Position.parse(until.toString());
+            if (i == 1) {
+                // added while the previous addition is caught up
+                sut.add(3, Set.of(art("f", 15), art("g", 150)));
+            }
+        }
+        assertEquals(List.of("b@2", "c@2", "f@3", "d@2", "g@3", "e@2"), res);
+        // all generations are covered by a single mark again
+        assertEquals(1, p.toString().split("\\.").length / 4);
+    }
+
+    @Test
+    public void tokensSurviveRestart() {
+        sut.add(1, Set.of(art("a", 10)));
+        var token = sut.seek(Position.after(0), 10).toString();
+        sut.add(2, Set.of(art("b", 5)));
+
+        var other = new ReleaseStore(dirTmp.getAbsolutePath());
+        assertEquals(2, other.getGeneration());
+        var res = new ArrayList<String>();
+        var after = Position.parse(token);
+        other.scan(after, other.seek(after, 10), (a, idx) -> res.add(a.groupId + "@" + idx));
+        assertEquals(List.of("b@2"), res);
+    }
+
+    @Test
+    public void batchesWithoutOrderAreAddedOnOpen() throws IOException {
+        sut.add(3, Set.of(art("a", 10)));
+        sut.add(1, Set.of(art("b", 20)));
+        // e.g., a store that has been written before the order was recorded
+        Files.delete(new File(dirTmp, "releases/order").toPath());
+        var other = new ReleaseStore(dirTmp.getAbsolutePath());
+        assertEquals(2, other.getGeneration());
+        other.add(2, Set.of(art("c", 30)));
+        assertEquals(List.of("1", "3", "2"), Files.readAllLines(new File(dirTmp, "releases/order").toPath()));
+    }
+
+    @Test
+    public void truncatedOrderIsCompleted() throws IOException {
+        sut.add(1, Set.of(art("a", 10)));
+        Files.writeString(new File(dirTmp, "releases/order").toPath(), "1\n2");
+        var other = new ReleaseStore(dirTmp.getAbsolutePath());
+        assertEquals(2, other.getGeneration());
+        other.add(3, Set.of(art("c", 30)));
+        assertEquals(3, other.getGeneration());
+        assertEquals(List.of("1", "2", "3"), Files.readAllLines(new File(dirTmp, "releases/order").toPath()));
+    }
+
+    @Test
+    public void tokensOfOtherStoresAreRejected() {
+        sut.add(1, Set.of(art("a", 10)));
+        assertThrows(IllegalArgumentException.class, () -> sut.seek(Position.parse("0.2.10.1.0"), 10));
+    }
+
+    @Test
+    public void everyArtifactIsPassedOnce() {
+        var rnd = new Random(1234);
+        var expected = new HashSet<String>();
+        var res = new ArrayList<String>();
+        var p = Position.after(50);
+        for (var num = 1; num <= 40; num++) {
+            var artifacts = new HashSet<Artifact>();
+            for (var i = 0; i < 5; i++) {
+                var a = art(num + "-" + i, rnd.nextInt(100));
+                artifacts.add(a);
+                if (a.releaseDate > 50) {
+                    expected.add(a.groupId + "@" + num);
+                }
+            }
+            sut.add(num, artifacts);
+            var until = sut.seek(p, 1 + rnd.nextInt(4));
+            sut.scan(p, until, (a, idx) -> res.add(a.groupId + "@" + idx));
+            p = Position.parse(until.toString());
+        }
+        res.addAll(since(p, 1000));
+        assertEquals(res.size(), new HashSet<>(res).size());
+        assertEquals(expected, new HashSet<>(res));
+    }
+
+    @Test
+    public void positionsCanBeParsed() {
+        var p = Position.after(123);
+        assertEquals(p, Position.parse(p.toString()));
+        assertEquals(123, Position.parse(p.toString()).getSince());
+        sut.add(1, Set.of(art("a", 200), art("b", 300)));
+        var q = sut.seek(p, 1);
+        assertEquals("123.1.200.1.0", q.toString());
+        assertEquals(q, Position.parse(q.toString()));
+        assertEquals(1, q.getGeneration());
+        assertEquals(123, q.getSince());
+        assertThrows(IllegalArgumentException.class, () -> Position.parse("1.2"));
+        assertThrows(IllegalArgumentException.class, () -> Position.parse("1.x.3.4.5"));
+        assertThrows(IllegalArgumentException.class, () -> Position.parse(""));
+        // generations must ascend, while their marks descend
+        assertThrows(IllegalArgumentException.class, () -> Position.parse("1.0.10.1.0"));
+        assertThrows(IllegalArgumentException.class, () -> Position.parse("1.2.10.1.0.1.5.1.0"));
+        assertThrows(IllegalArgumentException.class, () -> Position.parse("1.1.10.1.0.2.20.1.0"));
+        assertEquals("1.1.20.1.0.2.10.1.0", Position.parse("1.1.20.1.0.2.10.1.0").toString());
+    }
+
+    private List<String> since(Position after, int limit) {
+        var res = new ArrayList<String>();
+        sut.scan(after, sut.seek(after, limit), (a, idx) -> res.add(a.groupId + "@" + idx));
+        return res;
+    }
+
+    private static List<String> scan(ReleaseStore store, long from, long to) {
+        var res = new ArrayList<String>();
+        store.scan(from, to, (a, idx) -> res.add(a.groupId + "@" + idx));
+        return res;
+    }
+
+    private static Artifact art(String g, long date) {
+        return new Artifact(g, "a", "1", "jar").setReleaseDate(date);
+    }
+}
\ No newline at end of file
@@ -25,6 +25,10 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
@@ -86,6 +90,61 @@ public class RepositoryUtilsTest {
         assertEquals(0, httpd.requests.size());
     }
 
+    @Test
+    public void existsDoesNotDownload() {
+        httpd.setResponse(200, "text/plain", SOME_CONTENT);
+        assertTrue(sut.exists(1));
+        assertEquals(1, httpd.requests.size());
+        assertEquals(0, dirTmp.list().length);
+    }
+
+    @Test
+    public void repeatedMissingOnlyOneRequest() {
+        httpd.setResponse(404, "text/plain", "...");
+        assertFalse(sut.exists(1));
+        assertFalse(sut.exists(1));
+        assertEquals(1, httpd.requests.size());
+    }
+
+    @Test
+    public void missingIsCheckedAgainAfterTtl() {
+        sut = new RepositoryUtils(INDEX_URL, dirTmp.getAbsolutePath(), 0);
+        httpd.setResponse(404, "text/plain", "...");
+        assertFalse(sut.exists(1));
+        httpd.setResponse(200, "text/plain", "...");
+        assertTrue(sut.exists(1));
+        assertEquals(2, httpd.requests.size());
+    }
+
+    @Test
+    public void expiredMissingIndicesAreForgotten() {
+        sut = new RepositoryUtils(INDEX_URL, dirTmp.getAbsolutePath(), 0);
+        httpd.setResponse(404, "text/plain", "...");
+        for (var i = 1; i <= 20; i++) {
+            assertFalse(sut.exists(i));
+        }
+        assertTrue(sut.getMissingCount() <= 1);
+    }
+
+    @Test
+    public void missingIndicesAreRememberedUntilTtl() {
+        httpd.setResponse(404, "text/plain", "...");
+        for (var i = 1; i <= 20; i++) {
+            assertFalse(sut.exists(i));
+        }
+        assertEquals(20, sut.getMissingCount());
+    }
+
+    @Test
+    public void downloadMarksIndexAsExisting() {
+        httpd.setResponse(200, "text/plain", SOME_CONTENT);
+        sut.download(1);
+        httpd.reset();
+        httpd.setResponse(404, "text/plain", "...");
+        assertTrue(sut.exists(1));
+        assertEquals(0, httpd.requests.size());
+    }
+
     @Test
     public void repeatedDownloadsOnlyOneRequest() {
         assertTrue(sut.download(1).exists());
@@ -95,6 +154,32 @@ public class RepositoryUtilsTest {
         assertEquals(0, httpd.requests.size());
     }
 
+    @Test
+    public void concurrentDownloadsOnlyOneRequest() throws InterruptedException {
+        httpd.setResponse(200, "text/plain", SOME_CONTENT);
+        var start = new CountDownLatch(1);
+        var files = ConcurrentHashMap.<File>newKeySet();
+        var threads = new ArrayList<Thread>();
+        for (var i = 0; i < 8; i++) {
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    files.add(sut.download(1));
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (var t : threads) {
+            t.join();
+        }
+        assertEquals(1, httpd.requests.size());
+        assertEquals(1, files.size());
+        assertEquals(Set.of("maven-crawler-1.tmp"), Set.of(dirTmp.list()));
+    }
+
     @Test
     public void downloadingNonExistingFails() {
         httpd.setResponse(404, "text/plain", "...");
@@ -103,6 +188,13 @@ public class RepositoryUtilsTest {
         });
     }
 
+    @Test
+    public void failedDownloadsLeaveNoFiles() {
+        httpd.setResponse(404, "text/plain", "...");
+        assertFalse(sut.exists(1));
+        assertEquals(0, dirTmp.list().length);
+    }
+
     @Test
     public void downloadingExistingWorks() throws IOException {
         httpd.setResponse(200, "text/plain", SOME_CONTENT);
@@ -111,5 +203,19 @@ public class RepositoryUtilsTest {
         assertTrue(actual.getAbsolutePath().startsWith(dirTmp.getAbsolutePath()));
         assertEquals("maven-crawler-1.tmp", actual.getName());
         assertEquals(SOME_CONTENT, readFileToString(actual, UTF_8.name()));
+        assertEquals(Set.of("maven-crawler-1.tmp"), Set.of(dirTmp.list()));
+    }
+
+    @Test
+    public void highestLocalIndexWithoutFiles() {
+        assertEquals(0, sut.getHighestLocalIndex());
+    }
+
+    @Test
+    public void highestLocalIndex() throws IOException {
+        for (var name : new String[] { "maven-crawler-3.tmp", "maven-crawler-12.tmp", "maven-crawler-13.artifacts", "maven-crawler-14.tmp.123.part", "other" }) {
+            new File(dirTmp, name).createNewFile();
+        }
+        assertEquals(12, sut.getHighestLocalIndex());
     }
 }
\ No newline at end of file
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import static dev.c0ps.maveneasyindex.BoundedCache.EvictionPolicy.LRU;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ResponseCacheTest {
+
+    private AtomicInteger loads;
+    private ResponseCache sut;
+
+    @BeforeEach
+    public void setup() {
+        loads = new AtomicInteger();
+        var loader = new IndexLoader(null, null, null, null, null, null) {
+            @Override
+            public CompactArtifactSet get(int num) {
+                loads.incrementAndGet();
+                return CompactArtifactSet.of(Set.of( //
+                        new Artifact("g", "a", "1", "jar").setReleaseDate(num), //
+                        new Artifact("g", "b", "2", "pom").setReleaseDate(num)));
+            }
+        };
+        sut = new ResponseCache(loader, new BoundedCache<>(1024 * 1024, ResponseCache.EncodedResponse::estimateSize, LRU, 1, MINUTES));
+    }
+
+    @Test
+    public void encodesArtifacts() throws IOException {
+        var res = sut.get(1, ArtifactFormat.JSON, false);
+        assertEquals("[\"g:a:1:jar:1\",\"g:b:2:pom:1\"]", new String(res.bytes));
+        assertFalse(res.isGzip);
+    }
+
+    @Test
+    public void repeatedRequestsAreServedFromCache() {
+        var a = sut.get(1, ArtifactFormat.JSON, false);
+        var b = sut.get(1, ArtifactFormat.JSON, false);
+        assertSame(a, b);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void gzipIsDerivedFromPlain() throws IOException {
+        var plain = sut.get(1, ArtifactFormat.JSON, false);
+        var gzip = sut.get(1, ArtifactFormat.JSON, true);
+        assertTrue(gzip.isGzip);
+        assertArrayEquals(plain.bytes, new GZIPInputStream(new ByteArrayInputStream(gzip.bytes)).readAllBytes());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void etagsAreStable() {
+        var a = sut.get(1, ArtifactFormat.JSON, false).etag;
+        setup();
+        var b = sut.get(1, ArtifactFormat.JSON, false).etag;
+        assertEquals(a, b);
+    }
+
+    @Test
+    public void etagsDifferForEachVariant() {
+        var etags = Set.of( //
+                sut.get(1, ArtifactFormat.JSON, false).etag, //
+                sut.get(1, ArtifactFormat.JSON, true).etag, //
+                sut.get(1, ArtifactFormat.BINARY, false).etag, //
+                sut.get(2, ArtifactFormat.JSON, false).etag);
+        assertEquals(4, etags.size());
+        assertNotEquals(sut.get(1, ArtifactFormat.SMILE, false).etag, sut.get(1, ArtifactFormat.JSON, false).etag);
+    }
+}
\ No newline at end of file
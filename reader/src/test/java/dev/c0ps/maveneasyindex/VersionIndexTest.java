@@ -0,0 +1,185 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.maveneasyindex;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dev.c0ps.commons.ResourceUtils;
+
+public class VersionIndexTest {
+
+    @TempDir
+    private File dirTmp;
+    private VersionIndex sut;
+
+    @BeforeEach
+    public void setup() {
+        // merges run right away, like on an idle compaction thread
+        sut = new VersionIndex(dirTmp.getAbsolutePath(), Runnable::run);
+    }
+
+    @Test
+    public void unknownArtifactsHaveNoVersions() {
+        assertEquals(List.of(), sut.lookup("g", "a"));
+        sut.add(1, Set.of(art("g", "a", "1", 1)));
+        assertEquals(List.of(), sut.lookup("g", "b"));
+        assertEquals(List.of(), sut.lookup("h", "a"));
+    }
+
+    @Test
+    public void versionsAreFoundAcrossIndices() {
+        sut.add(1, Set.of(art("g", "a", "1", 10), art("g", "b", "1", 11)));
+        sut.add(2, Set.of(art("g", "a", "2", 20)));
+
+        var expected = List.of( //
+                new VersionEntry("1", "jar", 10, 1), //
+                new VersionEntry("2", "jar", 20, 2));
+        assertEquals(expected, sut.lookup("g", "a"));
+        assertEquals(List.of(new VersionEntry("1", "jar", 11, 1)), sut.lookup("g", "b"));
+    }
+
+    @Test
+    public void versionsAreOrderedByReleaseDate() {
+        sut.add(2, Set.of(art("g", "a", "2", 5)));
+        sut.add(1, Set.of(art("g", "a", "1", 10)));
+        assertEquals(List.of("2", "1"), versions("g", "a"));
+    }
+
+    @Test
+    public void indicesAreOnlyAddedOnce() {
+        sut.add(1, Set.of(art("g", "a", "1", 10)));
+        sut.add(1, Set.of(art("g", "a", "1", 10)));
+        assertTrue(sut.contains(1));
+        assertFalse(sut.contains(2));
+        assertEquals(1, sut.lookup("g", "a").size());
+        assertEquals(1, sut.getSegmentCount());
+    }
+
+    @Test
+    public void indexIsPersisted() {
+        sut.add(1, Set.of(art("g", "a", "1", 10)));
+        sut.add(2, Set.of(art("g", "a", "2", 20)));
+
+        var other = new VersionIndex(dirTmp.getAbsolutePath());
+        assertTrue(other.contains(1));
+        assertTrue(other.contains(2));
+        assertEquals(List.of("1", "2"), versions(other, "g", "a"));
+    }
+
+    @Test
+    public void segmentsAreMerged() {
+        for (var i = 1; i <= 16; i++) {
+            sut.add(i, Set.of(art("g", "a", "" + i, i), art("g", "x" + i, "1", i)));
+        }
+        assertTrue(sut.getSegmentCount() < VersionIndex.MERGE_FACTOR, "" + sut.getSegmentCount());
+        assertEquals(16, sut.lookup("g", "a").size());
+        for (var i = 1; i <= 16; i++) {
+            assertTrue(sut.contains(i));
+            assertEquals(List.of(new VersionEntry("1", "jar", i, i)), sut.lookup("g", "x" + i));
+        }
+        assertEquals(sut.getSegmentCount(), new File(dirTmp, "versions").list().length);
+    }
+
+    @Test
+    public void mergesAreLeftToTheCompactor() {
+        var tasks = new ArrayList<Runnable>();
+        sut = new VersionIndex(dirTmp.getAbsolutePath(), tasks::add);
+        for (var i = 1; i <= 16; i++) {
+            sut.add(i, Set.of(art("g", "a", "" + i, i)));
+        }
+        assertEquals(16, sut.getSegmentCount());
+        assertEquals(16, sut.lookup("g", "a").size());
+        // pending runs are not scheduled again
+        assertEquals(1, tasks.size());
+
+        tasks.get(0).run();
+        assertTrue(sut.getSegmentCount() < VersionIndex.MERGE_FACTOR, "" + sut.getSegmentCount());
+        assertEquals(16, sut.lookup("g", "a").size());
+
+        sut.add(17, Set.of(art("g", "a", "17", 17)));
+        assertEquals(2, tasks.size());
+    }
+
+    @Test
+    public void staleSegmentsAreRemovedOnOpen() throws IOException {
+        sut.add(1, Set.of(art("g", "a", "1", 10)));
+        var dir = new File(dirTmp, "versions");
+        var seg = new File(dir, "versions-1.seg");
+        // simulates a merge that has been interrupted before its inputs were deleted
+        Files.copy(seg.toPath(), new File(dir, "versions-2.seg").toPath());
+
+        var other = new VersionIndex(dirTmp.getAbsolutePath());
+        assertEquals(1, other.getSegmentCount());
+        assertEquals(1, other.lookup("g", "a").size());
+        assertFalse(seg.exists());
+    }
+
+    @Test
+    public void corruptSegmentsAreIgnored() throws IOException {
+        var dir = new File(dirTmp, "versions");
+        Files.writeString(new File(dir, "versions-7.seg").toPath(), "corrupt");
+        var other = new VersionIndex(dirTmp.getAbsolutePath());
+        assertEquals(0, other.getSegmentCount());
+        other.add(1, Set.of(art("g", "a", "1", 10)));
+        assertEquals(1, other.lookup("g", "a").size());
+    }
+
+    @Test
+    public void nonAsciiKeysAreFound() {
+        sut.add(1, Set.of(art("gé", "a", "1", 1), art("g😀", "a", "1", 2), art("g�", "a", "1", 3)));
+        assertEquals(1, sut.lookup("gé", "a").size());
+        assertEquals(1, sut.lookup("g😀", "a").size());
+        assertEquals(1, sut.lookup("g�", "a").size());
+    }
+
+    @Test
+    public void realIndex() {
+        var artifacts = new IndexFileReader().readIndexFile(ResourceUtils.getTestResource("some-index.gz"));
+        sut.add(1, artifacts);
+        for (var a : artifacts) {
+            assertTrue(sut.lookup(a.groupId, a.artifactId).contains(new VersionEntry(a.version, a.packaging, a.releaseDate, 1)));
+        }
+    }
+
+    private List<String> versions(String g, String a) {
+        return versions(sut, g, a);
+    }
+
+    private static List<String> versions(VersionIndex idx, String g, String a) {
+        var versions = new ArrayList<String>();
+        for (var e : idx.lookup(g, a)) {
+            versions.add(e.version);
+        }
+        return versions;
+    }
+
+    private static Artifact art(String g, String a, String v, long date) {
+        return new Artifact(g, a, v, "jar").setReleaseDate(date);
+    }
+}
\ No newline at end of file